@@ -1,16 +1,30 @@
 package ru.ifmo.ctddev.sabirzyanov.arrayset;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Created by Ilnar Sabirzyanov on 01.03.2016.
+ * <p>
+ * Elements are kept in a sorted array. Subsets and the descending set are views over the same
+ * array, described by a range and a direction, so they don't copy elements, and iteration reads
+ * the array directly. Index-based lookups ({@link #ceilingIndex(Object)} and others with
+ * {@link #get(int)}) and {@link #forEachInRange} scan ranges without allocating views or iterators.
  */
 public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
-    private final List<T> data;
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    private final Object[] elements;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+    private final Comparator<? super T> base;
+    private final Comparator<? super T> order;
     private final Comparator<? super T> comp;
+    private final EytzingerIndex<T> index;
 
     public ArraySet() {
-        this(Collections.emptyList(), null);
+        this(new Object[0], null);
     }
 
     public ArraySet(Collection<? extends T> col) {
@@ -18,16 +32,200 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     }
 
     public ArraySet(Collection<? extends T> col, Comparator<? super T> comp) {
-        this.data = new ArrayList<>();
-        this.comp = comp;
-        TreeSet<T> set = new TreeSet<>(comp);
-        set.addAll(col);
-        data.addAll(set);
+        this(col, comp, false);
+    }
+
+    /**
+     * Creates set, optionally with an {@link EytzingerIndex} for lookups.
+     * <p>
+     * A {@link SortedSet} with the same comparator is copied as is. Other input is checked
+     * for being sorted and, if it isn't, sorted in parallel when large. Duplicates are then
+     * dropped in one pass, keeping the first of equal elements.
+     * <p>
+     * The index takes one reference and one {@code int} per element and pays off on sets
+     * much larger than the CPU cache. Views of the set share the index.
+     *
+     * @param col elements of the set
+     * @param comp order of the elements or {@code null} for natural order
+     * @param searchIndex whether to build the search index
+     */
+    public ArraySet(Collection<? extends T> col, Comparator<? super T> comp, boolean searchIndex) {
+        this(sortedDistinct(col, comp), comp, searchIndex);
+    }
+
+    private ArraySet(Object[] elements, Comparator<? super T> comp) {
+        this(elements, comp, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArraySet(Object[] elements, Comparator<? super T> comp, boolean searchIndex) {
+        this(elements, 0, elements.length, false, comp, comp,
+                searchIndex ? new EytzingerIndex<>(Arrays.asList((T[]) elements), comp) : null);
     }
 
-    private ArraySet(List<T> data, Comparator<? super T> comp) {
-        this.data = data;
+    private ArraySet(Object[] elements, int from, int to, boolean descending, Comparator<? super T> base,
+                     Comparator<? super T> comp, EytzingerIndex<T> index) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+        this.base = base;
+        this.order = order(base);
         this.comp = comp;
+        this.index = index;
+    }
+
+    /**
+     * Creates set of elements that are already sorted by {@code comp} without duplicates.
+     * The order is trusted and not checked.
+     *
+     * @param sorted strictly increasing elements
+     * @param comp order of the elements or {@code null} for natural order
+     * @param <T> type of elements
+     * @return set of {@code sorted} elements
+     */
+    public static <T> ArraySet<T> ofSorted(Collection<? extends T> sorted, Comparator<? super T> comp) {
+        return new ArraySet<>(sorted.toArray(), comp);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Comparator<? super T> order(Comparator<? super T> comp) {
+        return comp != null ? comp : (Comparator<? super T>) (Comparator) Comparator.naturalOrder();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Object[] sortedDistinct(Collection<? extends T> col, Comparator<? super T> comp) {
+        T[] elements = (T[]) col.toArray();
+        if (col instanceof SortedSet && Objects.equals(((SortedSet<?>) col).comparator(), comp)) {
+            return elements;
+        }
+        Comparator<? super T> order = order(comp);
+        if (!isSorted(elements, order)) {
+            if (elements.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(elements, order);
+            } else {
+                Arrays.sort(elements, order);
+            }
+        }
+        return distinct(elements, order);
+    }
+
+    private static <T> boolean isSorted(T[] elements, Comparator<? super T> order) {
+        for (int i = 1; i < elements.length; i++) {
+            if (order.compare(elements[i - 1], elements[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> Object[] distinct(T[] elements, Comparator<? super T> order) {
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (size == 0 || order.compare(elements[size - 1], elements[i]) != 0) {
+                elements[size++] = elements[i];
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T at(int position) {
+        return (T) elements[position];
+    }
+
+    /**
+     * Returns position of the first element of the range not less than {@code t} in the array order.
+     */
+    private int lowerBound(T t) {
+        if (index != null) {
+            int res = index.search(t);
+            return Math.min(Math.max(res < 0 ? -res - 1 : res, from), to);
+        }
+        int l = from;
+        int r = to;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (order.compare(at(m), t) < 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Returns position of the first element of the range greater than {@code t} in the array order.
+     */
+    private int upperBound(T t) {
+        int position = lowerBound(t);
+        return position < to && order.compare(at(position), t) == 0 ? position + 1 : position;
+    }
+
+    private int index(int position) {
+        if (position < from || position >= to) {
+            return -1;
+        }
+        return descending ? to - 1 - position : position - from;
+    }
+
+    private T element(int position) {
+        return from <= position && position < to ? at(position) : null;
+    }
+
+    /**
+     * Returns element at the {@code index} in the order of this set.
+     *
+     * @param index position of the element
+     * @return element
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        return at(descending ? to - 1 - index : from + index);
+    }
+
+    /**
+     * Returns index of the greatest element strictly less than {@code t} in the order of this set.
+     *
+     * @param t the value to match
+     * @return index for {@link #get(int)} or {@code -1} if there is no such element
+     */
+    public int lowerIndex(T t) {
+        return index(descending ? upperBound(t) : lowerBound(t) - 1);
+    }
+
+    /**
+     * Returns index of the greatest element less than or equal to {@code t} in the order of this set.
+     *
+     * @param t the value to match
+     * @return index for {@link #get(int)} or {@code -1} if there is no such element
+     */
+    public int floorIndex(T t) {
+        return index(descending ? lowerBound(t) : upperBound(t) - 1);
+    }
+
+    /**
+     * Returns index of the least element greater than or equal to {@code t} in the order of this set.
+     *
+     * @param t the value to match
+     * @return index for {@link #get(int)} or {@code -1} if there is no such element
+     */
+    public int ceilingIndex(T t) {
+        return index(descending ? upperBound(t) - 1 : lowerBound(t));
+    }
+
+    /**
+     * Returns index of the least element strictly greater than {@code t} in the order of this set.
+     *
+     * @param t the value to match
+     * @return index for {@link #get(int)} or {@code -1} if there is no such element
+     */
+    public int higherIndex(T t) {
+        return index(descending ? lowerBound(t) - 1 : upperBound(t));
     }
 
     /**
@@ -44,11 +242,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public T lower(T t) {
-        int res = Collections.binarySearch(data, t, comp);
-        if (res < 0) {
-            res = -res - 1;
-        }
-        return (0 < res && res <= size()) ? data.get(res - 1) : null;
+        return element(descending ? upperBound(t) : lowerBound(t) - 1);
     }
 
     /**
@@ -65,12 +259,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public T floor(T t) {
-        int res = Collections.binarySearch(data, t, comp);
-        if (0 <= res && res < size()) {
-            return data.get(res);
-        }
-        res = -(res + 1);
-        return (0 < res && res <= size()) ? data.get(res - 1) : null;
+        return element(descending ? lowerBound(t) : upperBound(t) - 1);
     }
 
     /**
@@ -87,11 +276,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public T ceiling(T t) {
-        int res = Collections.binarySearch(data, t, comp);
-        if (res < 0) {
-            res = -(res + 1);
-        }
-        return (0 <= res && res < size()) ? data.get(res) : null;
+        return element(descending ? upperBound(t) - 1 : lowerBound(t));
     }
 
     /**
@@ -108,14 +293,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public T higher(T t) {
-        int res = Collections.binarySearch(data, t, comp);
-        if (0 <= res && res < size()) {
-            res++;
-        }
-        if (res < 0) {
-            res = -res - 1;
-        }
-        return (0 <= res && res < size()) ? data.get(res) : null;
+        return element(descending ? lowerBound(t) - 1 : upperBound(t));
     }
 
     /**
@@ -147,18 +325,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public Iterator<T> iterator() {
-        return new Iterator<T>() {
-            private int pos = 0;
-            @Override
-            public boolean hasNext() {
-                return pos < size();
-            }
-
-            @Override
-            public T next() {
-                return data.get(pos++);
-            }
-        };
+        return new Iter(descending);
     }
 
     /**
@@ -178,7 +345,8 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public NavigableSet<T> descendingSet() {
-        return new ArraySet<>(new ReversedList<>(data, true), comp);
+        return new ArraySet<>(elements, from, to, !descending, base,
+                descending ? base : Collections.reverseOrder(base), index);
     }
 
     /**
@@ -189,18 +357,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public Iterator<T> descendingIterator() {
-        return new Iterator<T>() {
-            private int pos = data.size();
-            @Override
-            public boolean hasNext() {
-                return pos > 0;
-            }
-
-            @Override
-            public T next() {
-                return data.get(--pos);
-            }
-        };
+        return new Iter(!descending);
     }
 
     /**
@@ -243,17 +400,12 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (fromElement == null || toElement == null) {
             throw new NullPointerException();
         }
-        int fromPos = Collections.binarySearch(data, fromElement, comp);
-        int toPos = Collections.binarySearch(data, toElement, comp);
-        if (!fromInclusive && 0 <= fromPos && fromPos < data.size()) {
-            fromPos++;
-        }
-        if (!toInclusive && 0 <= toPos && toPos < data.size()) {
-            toPos--;
+        if (descending) {
+            return view(toInclusive ? lowerBound(toElement) : upperBound(toElement),
+                    fromInclusive ? upperBound(fromElement) : lowerBound(fromElement));
         }
-        fromPos = (fromPos < 0) ? -fromPos - 1 : fromPos;
-        toPos = (toPos < 0) ? -toPos - 2 : toPos;
-        return new ArraySet<>(data.subList(fromPos, Math.max(toPos + 1, fromPos)), comp);
+        return view(fromInclusive ? lowerBound(fromElement) : upperBound(fromElement),
+                toInclusive ? upperBound(toElement) : lowerBound(toElement));
     }
 
     /**
@@ -285,10 +437,10 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public NavigableSet<T> headSet(T toElement, boolean inclusive) {
-        if (isEmpty()) {
-            return new ArraySet<>();
+        if (descending) {
+            return view(inclusive ? lowerBound(toElement) : upperBound(toElement), to);
         }
-        return subSet(first(), true, toElement, inclusive);
+        return view(from, inclusive ? upperBound(toElement) : lowerBound(toElement));
     }
 
     /**
@@ -320,10 +472,10 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
-        if (isEmpty()) {
-            return new ArraySet<>();
+        if (descending) {
+            return view(from, inclusive ? upperBound(fromElement) : lowerBound(fromElement));
         }
-        return subSet(fromElement, inclusive, last(), true);
+        return view(inclusive ? lowerBound(fromElement) : upperBound(fromElement), to);
     }
 
     /**
@@ -397,7 +549,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        return data.get(0);
+        return get(0);
     }
 
     /**
@@ -411,7 +563,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        return data.get(size() - 1);
+        return get(size() - 1);
     }
 
     /**
@@ -423,7 +575,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      */
     @Override
     public int size() {
-        return data.size();
+        return to - from;
     }
 
     /**
@@ -444,7 +596,276 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     @Override
     @SuppressWarnings("unchecked")
     public boolean contains(Object o) {
-        return Collections.binarySearch(data, (T) o, comp) >= 0;
+        T t = (T) o;
+        int position = lowerBound(t);
+        return position < to && order.compare(at(position), t) == 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this set contains all of the elements of the specified collection.
+     * An {@code ArraySet} with the same comparator is checked in one merge pass.
+     *
+     * @param c collection to be checked for containment in this set
+     * @return <tt>true</tt> if this set contains all of the elements of the specified collection
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsAll(Collection<?> c) {
+        if (c instanceof ArraySet && Objects.equals(((ArraySet<?>) c).comp, comp)) {
+            return SetAlgebra.containsAll(list(), ((ArraySet<T>) c).list(), order(comp));
+        }
+        return super.containsAll(c);
+    }
+
+    /**
+     * Returns {@link #ceiling(Object)} of every probe, see {@link BatchSearch}.
+     *
+     * @param probes values to match, preferably sorted by the comparator of this set
+     * @param parallel whether large batches may be processed in parallel
+     * @return list of least elements greater than or equal to the probes, with {@code null}s
+     * where there is no such element
+     */
+    public List<T> ceilingAll(List<? extends T> probes, boolean parallel) {
+        List<T> data = list();
+        int[] positions = BatchSearch.lowerBounds(data, probes, order(comp), parallel);
+        List<T> result = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            result.add(position < data.size() ? data.get(position) : null);
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@link #floor(Object)} of every probe, see {@link BatchSearch}.
+     *
+     * @param probes values to match, preferably sorted by the comparator of this set
+     * @param parallel whether large batches may be processed in parallel
+     * @return list of greatest elements less than or equal to the probes, with {@code null}s
+     * where there is no such element
+     */
+    public List<T> floorAll(List<? extends T> probes, boolean parallel) {
+        List<T> data = list();
+        Comparator<? super T> order = order(comp);
+        int[] positions = BatchSearch.lowerBounds(data, probes, order, parallel);
+        List<T> result = new ArrayList<>(positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            int position = positions[i];
+            if (position == data.size() || order.compare(data.get(position), probes.get(i)) != 0) {
+                position--;
+            }
+            result.add(position >= 0 ? data.get(position) : null);
+        }
+        return result;
+    }
+
+    /**
+     * Checks which probes are contained in this set, see {@link BatchSearch}.
+     *
+     * @param probes values to test, preferably sorted by the comparator of this set
+     * @param parallel whether large batches may be processed in parallel
+     * @return array with <tt>true</tt> for every probe contained in this set
+     */
+    public boolean[] containsEach(List<? extends T> probes, boolean parallel) {
+        List<T> data = list();
+        Comparator<? super T> order = order(comp);
+        int[] positions = BatchSearch.lowerBounds(data, probes, order, parallel);
+        boolean[] result = new boolean[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = positions[i] < data.size() && order.compare(data.get(positions[i]), probes.get(i)) == 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns set of elements contained in this set or in {@code other}.
+     *
+     * @param other set with the same comparator
+     * @return union of the sets
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public ArraySet<T> union(ArraySet<T> other) {
+        return union(this, other, false);
+    }
+
+    /**
+     * Returns set of elements contained both in this set and in {@code other}.
+     *
+     * @param other set with the same comparator
+     * @return intersection of the sets
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public ArraySet<T> intersection(ArraySet<T> other) {
+        return intersection(this, other, false);
+    }
+
+    /**
+     * Returns set of elements contained in this set but not in {@code other}.
+     *
+     * @param other set with the same comparator
+     * @return difference of the sets
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public ArraySet<T> difference(ArraySet<T> other) {
+        return difference(this, other, false);
+    }
+
+    /**
+     * Returns set of elements contained in exactly one of this set and {@code other}.
+     *
+     * @param other set with the same comparator
+     * @return symmetric difference of the sets
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public ArraySet<T> symmetricDifference(ArraySet<T> other) {
+        return symmetricDifference(this, other, false);
+    }
+
+    /**
+     * Returns union of {@code a} and {@code b}, see {@link SetAlgebra}.
+     *
+     * @param a first set
+     * @param b second set with the same comparator
+     * @param parallel whether large sets may be processed in parallel
+     * @param <T> type of elements
+     * @return union of the sets
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public static <T> ArraySet<T> union(ArraySet<T> a, ArraySet<T> b, boolean parallel) {
+        return apply(SetAlgebra.Operation.UNION, a, b, parallel);
+    }
+
+    /**
+     * Returns intersection of {@code a} and {@code b}, see {@link SetAlgebra}.
+     *
+     * @param a first set
+     * @param b second set with the same comparator
+     * @param parallel whether large sets may be processed in parallel
+     * @param <T> type of elements
+     * @return intersection of the sets
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public static <T> ArraySet<T> intersection(ArraySet<T> a, ArraySet<T> b, boolean parallel) {
+        return apply(SetAlgebra.Operation.INTERSECTION, a, b, parallel);
+    }
+
+    /**
+     * Returns difference of {@code a} and {@code b}, see {@link SetAlgebra}.
+     *
+     * @param a first set
+     * @param b second set with the same comparator
+     * @param parallel whether large sets may be processed in parallel
+     * @param <T> type of elements
+     * @return elements of {@code a} which are not in {@code b}
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public static <T> ArraySet<T> difference(ArraySet<T> a, ArraySet<T> b, boolean parallel) {
+        return apply(SetAlgebra.Operation.DIFFERENCE, a, b, parallel);
+    }
+
+    /**
+     * Returns symmetric difference of {@code a} and {@code b}, see {@link SetAlgebra}.
+     *
+     * @param a first set
+     * @param b second set with the same comparator
+     * @param parallel whether large sets may be processed in parallel
+     * @param <T> type of elements
+     * @return elements contained in exactly one of the sets
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public static <T> ArraySet<T> symmetricDifference(ArraySet<T> a, ArraySet<T> b, boolean parallel) {
+        return apply(SetAlgebra.Operation.SYMMETRIC_DIFFERENCE, a, b, parallel);
+    }
+
+    private static <T> ArraySet<T> apply(SetAlgebra.Operation operation, ArraySet<T> a, ArraySet<T> b,
+                                         boolean parallel) {
+        if (!Objects.equals(a.comp, b.comp)) {
+            throw new IllegalArgumentException("Sets have different comparators");
+        }
+        List<T> result = SetAlgebra.apply(operation, a.list(), b.list(), order(a.comp), parallel);
+        return new ArraySet<>(result.toArray(), a.comp);
+    }
+
+    private ArraySet<T> view(int lo, int hi) {
+        return new ArraySet<>(elements, lo, Math.max(lo, hi), descending, base, comp, index);
+    }
+
+    /**
+     * Returns elements of this set in its order as a list backed by the array.
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> list() {
+        List<T> ascending = Arrays.asList((T[]) elements).subList(from, to);
+        return descending ? new ReversedList<>(ascending, true) : ascending;
+    }
+
+    /**
+     * Performs {@code action} for each element from {@code fromElement} to {@code toElement}
+     * in the order of this set, without creating a view or an iterator.
+     *
+     * @param fromElement   low endpoint of the range
+     * @param fromInclusive {@code true} if the low endpoint is to be included
+     * @param toElement     high endpoint of the range
+     * @param toInclusive   {@code true} if the high endpoint is to be included
+     * @param action        action to perform
+     */
+    public void forEachInRange(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive,
+                               Consumer<? super T> action) {
+        if (descending) {
+            int hi = fromInclusive ? upperBound(fromElement) : lowerBound(fromElement);
+            for (int i = hi - 1, lo = toInclusive ? lowerBound(toElement) : upperBound(toElement); i >= lo; i--) {
+                action.accept(at(i));
+            }
+        } else {
+            int hi = toInclusive ? upperBound(toElement) : lowerBound(toElement);
+            for (int i = fromInclusive ? lowerBound(fromElement) : upperBound(fromElement); i < hi; i++) {
+                action.accept(at(i));
+            }
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        if (descending) {
+            for (int i = to - 1; i >= from; i--) {
+                action.accept(at(i));
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                action.accept(at(i));
+            }
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = Arrays.copyOfRange(elements, from, to);
+        if (descending) {
+            Collections.reverse(Arrays.asList(result));
+        }
+        return result;
+    }
+
+    private class Iter implements Iterator<T> {
+        private final boolean backward;
+        private int pos;
+
+        Iter(boolean backward) {
+            this.backward = backward;
+            this.pos = backward ? to : from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return backward ? pos > from : pos < to;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return at(backward ? --pos : pos++);
+        }
     }
 
     class ReversedList<E> extends AbstractList<E> implements RandomAccess {
@@ -0,0 +1,80 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Locates many probes in a sorted list at once.
+ * <p>
+ * Sorted probes are located in one forward pass: each search gallops from the position of the
+ * previous probe, so close probes cost a few comparisons and the pass never takes more than
+ * {@code O(m log(n / m))} comparisons for {@code m} probes. Unsorted probes fall back to
+ * binary search per probe. Large batches may be split into ranges searched in parallel.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+class BatchSearch {
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    private BatchSearch() {
+    }
+
+    /**
+     * Returns position of the first element not less than the probe, for every probe.
+     * @param data sorted list
+     * @param probes keys to locate, in any order
+     * @param order order of the elements
+     * @param parallel whether large batches may be processed in parallel
+     * @param <T> type of elements
+     * @return positions in {@code data}, equal to its size for probes greater than all elements
+     */
+    static <T> int[] lowerBounds(List<T> data, List<? extends T> probes, Comparator<? super T> order,
+                                 boolean parallel) {
+        int[] positions = new int[probes.size()];
+        boolean sorted = isSorted(probes, order);
+        int parts = parallel && probes.size() >= PARALLEL_THRESHOLD
+                ? Math.min(probes.size() / PARALLEL_THRESHOLD, 4 * Runtime.getRuntime().availableProcessors())
+                : 1;
+        IntStream stream = IntStream.range(0, parts);
+        (parts > 1 ? stream.parallel() : stream).forEach(part -> {
+            int from = (int) ((long) probes.size() * part / parts);
+            int to = (int) ((long) probes.size() * (part + 1) / parts);
+            search(data, probes, from, to, sorted, order, positions);
+        });
+        return positions;
+    }
+
+    private static <T> void search(List<T> data, List<? extends T> probes, int from, int to, boolean sorted,
+                                   Comparator<? super T> order, int[] positions) {
+        int position = 0;
+        for (int i = from; i < to; i++) {
+            T probe = probes.get(i);
+            position = sorted ? SetAlgebra.lowerBound(data, position, probe, order) : lowerBound(data, probe, order);
+            positions[i] = position;
+        }
+    }
+
+    private static <T> int lowerBound(List<T> data, T key, Comparator<? super T> order) {
+        int l = 0;
+        int r = data.size();
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (order.compare(data.get(m), key) < 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    private static <T> boolean isSorted(List<? extends T> probes, Comparator<? super T> order) {
+        for (int i = 1; i < probes.size(); i++) {
+            if (order.compare(probes.get(i - 1), probes.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Encoding of a key relative to the previous one in a block of {@link CompressedArraySet}.
+ * <p>
+ * The first key of every block is kept as is, the following keys are written as differences,
+ * so the codec only has to work on runs of increasing keys.
+ *
+ * @param <T> type of elements
+ * @author Ilnar Sabirzyanov
+ */
+public interface BlockCodec<T> {
+    /**
+     * Writes {@code key} following {@code previous}.
+     * @param previous previous key of the block
+     * @param key key to write, greater than {@code previous}
+     * @param out destination
+     */
+    void write(T previous, T key, ByteArrayOutputStream out);
+
+    /**
+     * Reads key following {@code previous} at the position of {@code in}.
+     * @param previous previous key of the block
+     * @param in encoded block, positioned at the key
+     * @return decoded key
+     */
+    T read(T previous, ByteBuffer in);
+
+    /**
+     * Returns order of the elements, or {@code null} for natural order.
+     * @return comparator of elements
+     */
+    Comparator<? super T> comparator();
+
+    /**
+     * Returns codec of {@code long} keys in natural order, storing the difference with the previous
+     * key as a varint, so close identifiers take one or two bytes.
+     * @return long codec
+     */
+    static BlockCodec<Long> longs() {
+        return new BlockCodec<Long>() {
+            @Override
+            public void write(Long previous, Long key, ByteArrayOutputStream out) {
+                VarInts.write(key - previous, out);
+            }
+
+            @Override
+            public Long read(Long previous, ByteBuffer in) {
+                return previous + VarInts.read(in);
+            }
+
+            @Override
+            public Comparator<? super Long> comparator() {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Returns front-coding codec of strings in natural order: the length of the prefix shared
+     * with the previous key, then the rest of the key, with lengths and chars stored as varints.
+     * @return string codec
+     */
+    static BlockCodec<String> strings() {
+        return new BlockCodec<String>() {
+            @Override
+            public void write(String previous, String key, ByteArrayOutputStream out) {
+                int prefix = 0;
+                int length = Math.min(previous.length(), key.length());
+                while (prefix < length && previous.charAt(prefix) == key.charAt(prefix)) {
+                    prefix++;
+                }
+                VarInts.write(prefix, out);
+                VarInts.write(key.length() - prefix, out);
+                for (int i = prefix; i < key.length(); i++) {
+                    VarInts.write(key.charAt(i), out);
+                }
+            }
+
+            @Override
+            public String read(String previous, ByteBuffer in) {
+                int prefix = (int) VarInts.read(in);
+                char[] chars = new char[prefix + (int) VarInts.read(in)];
+                previous.getChars(0, prefix, chars, 0);
+                for (int i = prefix; i < chars.length; i++) {
+                    chars[i] = (char) VarInts.read(in);
+                }
+                return new String(chars);
+            }
+
+            @Override
+            public Comparator<? super String> comparator() {
+                return null;
+            }
+        };
+    }
+}
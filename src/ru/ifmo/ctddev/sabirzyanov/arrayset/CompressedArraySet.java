@@ -0,0 +1,332 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} storing sorted keys in compressed blocks.
+ * <p>
+ * Keys are split into blocks of a fixed number of elements. The first key of every block is kept
+ * as an object in a sparse index, the rest are encoded by {@link BlockCodec} relative to their
+ * predecessors into one byte array. A lookup runs binary search over the first keys and then
+ * decodes at most one block, so it costs {@code O(log(n / b) + b)} comparisons for blocks of
+ * {@code b} keys and allocates the decoded keys of that block. Views and the descending set
+ * share the storage.
+ * <p>
+ * Elements are decoded on access, so elements returned by the set are equal to the added ones
+ * but, except the first keys of blocks, are not the same objects.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class CompressedArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int BLOCK_SIZE = 16;
+
+    private final BlockCodec<T> codec;
+    private final Comparator<? super T> order;
+    private final int blockSize;
+    private final Object[] firstKeys;
+    private final int[] offsets;
+    private final byte[] data;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+
+    private CompressedArraySet(BlockCodec<T> codec, int blockSize, Object[] firstKeys, int[] offsets, byte[] data,
+                               int from, int to, boolean descending) {
+        this.codec = codec;
+        this.order = ArraySet.order(codec.comparator());
+        this.blockSize = blockSize;
+        this.firstKeys = firstKeys;
+        this.offsets = offsets;
+        this.data = data;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    /**
+     * Creates set of the {@code col} elements with blocks of 16 keys.
+     * @param col elements of the set, in any order and possibly with duplicates
+     * @param codec encoding of the keys
+     * @param <T> type of elements
+     * @return compressed set
+     */
+    public static <T> CompressedArraySet<T> of(Collection<? extends T> col, BlockCodec<T> codec) {
+        return of(col, codec, BLOCK_SIZE);
+    }
+
+    /**
+     * Creates set of the {@code col} elements. Larger blocks take less memory for the index
+     * and compress better, but each lookup decodes up to {@code blockSize} keys.
+     * @param col elements of the set, in any order and possibly with duplicates
+     * @param codec encoding of the keys
+     * @param blockSize number of keys in a block
+     * @param <T> type of elements
+     * @return compressed set
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompressedArraySet<T> of(Collection<? extends T> col, BlockCodec<T> codec, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size should be positive: " + blockSize);
+        }
+        Object[] sorted = ArraySet.sortedDistinct(col, codec.comparator());
+        int blocks = (sorted.length + blockSize - 1) / blockSize;
+        Object[] firstKeys = new Object[blocks];
+        int[] offsets = new int[blocks + 1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < sorted.length; i++) {
+            if (i % blockSize == 0) {
+                firstKeys[i / blockSize] = sorted[i];
+                offsets[i / blockSize] = out.size();
+            } else {
+                codec.write((T) sorted[i - 1], (T) sorted[i], out);
+            }
+        }
+        offsets[blocks] = out.size();
+        return new CompressedArraySet<>(codec, blockSize, firstKeys, offsets, out.toByteArray(),
+                0, sorted.length, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T first(int block) {
+        return (T) firstKeys[block];
+    }
+
+    private ByteBuffer block(int block) {
+        return ByteBuffer.wrap(data, offsets[block], offsets[block + 1] - offsets[block]);
+    }
+
+    private boolean after(T element, T key, boolean inclusive) {
+        int c = order.compare(element, key);
+        return inclusive ? c >= 0 : c > 0;
+    }
+
+    /**
+     * Returns position of the first element greater than {@code key} or equal to it, if {@code inclusive}.
+     */
+    private int bound(T key, boolean inclusive) {
+        int l = 0;
+        int r = firstKeys.length;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (after(first(m), key, inclusive)) {
+                r = m;
+            } else {
+                l = m + 1;
+            }
+        }
+        int position = 0;
+        if (l > 0) {
+            int block = l - 1;
+            position = block * blockSize + 1;
+            ByteBuffer in = block(block);
+            T previous = first(block);
+            while (in.hasRemaining() && !after(previous = codec.read(previous, in), key, inclusive)) {
+                position++;
+            }
+        }
+        return Math.min(Math.max(position, from), to);
+    }
+
+    /**
+     * Returns position of the first element not less than {@code key}.
+     */
+    private int lowerBound(T key) {
+        return bound(key, true);
+    }
+
+    /**
+     * Returns position of the first element greater than {@code key}.
+     */
+    private int upperBound(T key) {
+        return bound(key, false);
+    }
+
+    private T read(int position) {
+        int block = position / blockSize;
+        T key = first(block);
+        ByteBuffer in = block(block);
+        for (int i = position % blockSize; i > 0; i--) {
+            key = codec.read(key, in);
+        }
+        return key;
+    }
+
+    private T at(int position) {
+        return from <= position && position < to ? read(position) : null;
+    }
+
+    /**
+     * Decodes all keys of the {@code block} into {@code keys}.
+     */
+    private void decode(int block, Object[] keys) {
+        T previous = first(block);
+        keys[0] = previous;
+        ByteBuffer in = block(block);
+        for (int i = 1; in.hasRemaining(); i++) {
+            keys[i] = previous = codec.read(previous, in);
+        }
+    }
+
+    @Override
+    public T lower(T t) {
+        return at(descending ? upperBound(t) : lowerBound(t) - 1);
+    }
+
+    @Override
+    public T floor(T t) {
+        return at(descending ? lowerBound(t) : upperBound(t) - 1);
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return at(descending ? upperBound(t) - 1 : lowerBound(t));
+    }
+
+    @Override
+    public T higher(T t) {
+        return at(descending ? lowerBound(t) - 1 : upperBound(t));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        int position = lowerBound((T) o);
+        return position < to && order.compare(read(position), (T) o) == 0;
+    }
+
+    @Override
+    public T pollFirst() {
+        throw new UnsupportedOperationException("pollFirst");
+    }
+
+    @Override
+    public T pollLast() {
+        throw new UnsupportedOperationException("pollLast");
+    }
+
+    @Override
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return read(descending ? to - 1 : from);
+    }
+
+    @Override
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return read(descending ? from : to - 1);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return descending ? Collections.reverseOrder(codec.comparator()) : codec.comparator();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iter(descending);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new Iter(!descending);
+    }
+
+    @Override
+    public CompressedArraySet<T> descendingSet() {
+        return new CompressedArraySet<>(codec, blockSize, firstKeys, offsets, data, from, to, !descending);
+    }
+
+    private CompressedArraySet<T> view(int lo, int hi) {
+        return new CompressedArraySet<>(codec, blockSize, firstKeys, offsets, data, lo, Math.max(lo, hi), descending);
+    }
+
+    @Override
+    public CompressedArraySet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        int c = order.compare(fromElement, toElement);
+        if (descending ? c < 0 : c > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        if (descending) {
+            return view(toInclusive ? lowerBound(toElement) : upperBound(toElement),
+                    fromInclusive ? upperBound(fromElement) : lowerBound(fromElement));
+        }
+        return view(fromInclusive ? lowerBound(fromElement) : upperBound(fromElement),
+                toInclusive ? upperBound(toElement) : lowerBound(toElement));
+    }
+
+    @Override
+    public CompressedArraySet<T> headSet(T toElement, boolean inclusive) {
+        if (descending) {
+            return view(inclusive ? lowerBound(toElement) : upperBound(toElement), to);
+        }
+        return view(from, inclusive ? upperBound(toElement) : lowerBound(toElement));
+    }
+
+    @Override
+    public CompressedArraySet<T> tailSet(T fromElement, boolean inclusive) {
+        if (descending) {
+            return view(from, inclusive ? upperBound(fromElement) : lowerBound(fromElement));
+        }
+        return view(inclusive ? lowerBound(fromElement) : upperBound(fromElement), to);
+    }
+
+    @Override
+    public CompressedArraySet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public CompressedArraySet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public CompressedArraySet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Iterator decoding one block at a time.
+     */
+    private class Iter implements Iterator<T> {
+        private final boolean backward;
+        private final Object[] keys = new Object[blockSize];
+        private int block = -1;
+        private int pos;
+
+        Iter(boolean backward) {
+            this.backward = backward;
+            this.pos = backward ? to : from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return backward ? pos > from : pos < to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int position = backward ? --pos : pos++;
+            if (position / blockSize != block) {
+                block = position / blockSize;
+                decode(block, keys);
+            }
+            return (T) keys[position % blockSize];
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compares heap footprint and lookup time of {@link ArraySet} and {@link CompressedArraySet}
+ * on URL-like strings and on increasing identifiers with small gaps.
+ * <p>
+ * Footprint is the used heap freed by dropping a set built from freshly generated keys,
+ * so it includes the key objects. Run with a fixed heap ({@code -Xms} equal to {@code -Xmx})
+ * and the parallel or G1 collector: after {@link System#gc()} the serial one may report
+ * garbage of the previous run as used.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class CompressionBenchmark {
+    private static final int PROBES = 1 << 20;
+
+    /**
+     * Runs the benchmark.
+     * @param args [size [blockSize]]
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        run("urls", size, i -> String.format("https://example.com/catalog/%d/item-%d.html", i / 1000, i * 7),
+                BlockCodec.strings(), blockSize);
+        run("ids", size, i -> 1_000_000_000_000L + 37L * i + i % 11, BlockCodec.longs(), blockSize);
+    }
+
+    private static <T> void run(String name, int size, IntFunction<T> key, BlockCodec<T> codec, int blockSize) {
+        Random random = new Random(239);
+        List<T> probes = new ArrayList<>(PROBES);
+        for (int i = 0; i < PROBES; i++) {
+            probes.add(key.apply(random.nextInt(size)));
+        }
+
+        ArraySet<T> plain = new ArraySet<>(generate(size, key), codec.comparator());
+        CompressedArraySet<T> compressed = CompressedArraySet.of(generate(size, key), codec, blockSize);
+        long plainBytes = footprint(() -> new ArraySet<>(generate(size, key), codec.comparator()));
+        long compressedBytes = footprint(() -> CompressedArraySet.of(generate(size, key), codec, blockSize));
+
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("%-4s  size %9d  round %d  array set %6.1f B %6.1f ns  "
+                            + "compressed %6.1f B %6.1f ns%n",
+                    name, size, round, plainBytes / (double) size, measure(plain, probes),
+                    compressedBytes / (double) size, measure(compressed, probes));
+        }
+    }
+
+    private static <T> List<T> generate(int size, IntFunction<T> key) {
+        List<T> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keys.add(key.apply(i));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns heap taken by the set built by {@code factory}, as the difference of used heap
+     * while the set is alive and after it is dropped.
+     */
+    private static long footprint(Supplier<NavigableSet<?>> factory) {
+        NavigableSet<?>[] holder = {factory.get()};
+        long used = usedMemory();
+        if (holder[0].isEmpty()) {
+            return 0;
+        }
+        holder[0] = null;
+        return used - usedMemory();
+    }
+
+    /**
+     * Returns used heap after collecting garbage until it stops shrinking.
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        while (true) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+    }
+
+    private static <T> double measure(NavigableSet<T> set, List<T> probes) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (T probe : probes) {
+            if (set.contains(probe)) {
+                found++;
+            }
+        }
+        double nanos = (System.nanoTime() - start) / (double) probes.size();
+        if (found != probes.size()) {
+            throw new AssertionError();
+        }
+        return nanos;
+    }
+}
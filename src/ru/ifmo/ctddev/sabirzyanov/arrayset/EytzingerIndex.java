@@ -0,0 +1,57 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Search index over a sorted list, laid out in Eytzinger (breadth-first) order.
+ * <p>
+ * Node {@code k} has children {@code 2k} and {@code 2k + 1}, so the first levels of the
+ * implicit tree share a few cache lines and the descent touches memory in a predictable
+ * pattern, unlike binary search over the list. The descent has no data-dependent branches
+ * except the comparison itself, which is folded into the next node index.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+class EytzingerIndex<T> {
+    private final Object[] keys;
+    private final int[] ranks;
+    private final Comparator<? super T> comp;
+
+    EytzingerIndex(List<T> sorted, Comparator<? super T> comp) {
+        this.keys = new Object[sorted.size() + 1];
+        this.ranks = new int[sorted.size() + 1];
+        this.comp = ArraySet.order(comp);
+        build(sorted, 0, 1);
+    }
+
+    private int build(List<T> sorted, int next, int k) {
+        if (k < keys.length) {
+            next = build(sorted, next, 2 * k);
+            keys[k] = sorted.get(next);
+            ranks[k] = next++;
+            next = build(sorted, next, 2 * k + 1);
+        }
+        return next;
+    }
+
+    /**
+     * Searches for {@code key} like {@link java.util.Collections#binarySearch(List, Object, Comparator)}.
+     * @param key the value to match
+     * @return position of {@code key} in the sorted list, if it is there,
+     * {@code -(insertion point) - 1} otherwise
+     */
+    @SuppressWarnings("unchecked")
+    int search(T key) {
+        int n = keys.length - 1;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (comp.compare((T) keys[k], key) >>> 31);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        if (k == 0) {
+            return -n - 1;
+        }
+        return comp.compare((T) keys[k], key) == 0 ? ranks[k] : -ranks[k] - 1;
+    }
+}
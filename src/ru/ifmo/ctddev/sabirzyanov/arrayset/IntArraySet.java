@@ -0,0 +1,390 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of {@code int} values backed by a sorted {@code int[]}.
+ * <p>
+ * Unlike {@code ArraySet<Integer>} it stores four bytes per element and searches without boxing.
+ * Every boxed query has a primitive counterpart: {@link #contains(int)}, index-returning
+ * {@link #lowerIndex(int)}, {@link #floorIndex(int)}, {@link #ceilingIndex(int)},
+ * {@link #higherIndex(int)} together with {@link #getInt(int)}, and {@code int}-keyed views.
+ * Views and the descending set share the backing array with this set.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class IntArraySet extends AbstractSet<Integer> implements NavigableSet<Integer> {
+    private final int[] data;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+
+    public IntArraySet() {
+        this(new int[0], 0, 0, false);
+    }
+
+    /**
+     * Creates set of the {@code values}, in any order and possibly with duplicates.
+     * @param values elements of the set
+     */
+    public IntArraySet(int... values) {
+        this(distinct(values.clone()), false);
+    }
+
+    public IntArraySet(Collection<Integer> col) {
+        this(distinct(toArray(col)), false);
+    }
+
+    private IntArraySet(int[] data, boolean descending) {
+        this(data, 0, data.length, descending);
+    }
+
+    private IntArraySet(int[] data, int from, int to, boolean descending) {
+        this.data = data;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    private static int[] toArray(Collection<Integer> col) {
+        int[] values = new int[col.size()];
+        int i = 0;
+        for (int value : col) {
+            values[i++] = value;
+        }
+        return values;
+    }
+
+    private static int[] distinct(int[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (size == 0 || values[size - 1] != values[i]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns position of the first element greater than or equal to {@code key} in the backing array.
+     */
+    private int lowerBound(int key) {
+        int l = from;
+        int r = to;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (data[m] < key) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Returns position of the first element greater than {@code key} in the backing array.
+     */
+    private int upperBound(int key) {
+        int l = from;
+        int r = to;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (data[m] <= key) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    private int index(int position) {
+        if (position < from || position >= to) {
+            return -1;
+        }
+        return descending ? to - 1 - position : position - from;
+    }
+
+    /**
+     * Returns element at the {@code index} in the order of this set.
+     * @param index position of the element
+     * @return element
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public int getInt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        return descending ? data[to - 1 - index] : data[from + index];
+    }
+
+    /**
+     * Returns index of the greatest element strictly less than {@code key} in the order of this set.
+     * @param key the value to match
+     * @return index for {@link #getInt(int)} or {@code -1} if there is no such element
+     */
+    public int lowerIndex(int key) {
+        return index(descending ? upperBound(key) : lowerBound(key) - 1);
+    }
+
+    /**
+     * Returns index of the greatest element less than or equal to {@code key} in the order of this set.
+     * @param key the value to match
+     * @return index for {@link #getInt(int)} or {@code -1} if there is no such element
+     */
+    public int floorIndex(int key) {
+        return index(descending ? lowerBound(key) : upperBound(key) - 1);
+    }
+
+    /**
+     * Returns index of the least element greater than or equal to {@code key} in the order of this set.
+     * @param key the value to match
+     * @return index for {@link #getInt(int)} or {@code -1} if there is no such element
+     */
+    public int ceilingIndex(int key) {
+        return index(descending ? upperBound(key) - 1 : lowerBound(key));
+    }
+
+    /**
+     * Returns index of the least element strictly greater than {@code key} in the order of this set.
+     * @param key the value to match
+     * @return index for {@link #getInt(int)} or {@code -1} if there is no such element
+     */
+    public int higherIndex(int key) {
+        return index(descending ? lowerBound(key) - 1 : upperBound(key));
+    }
+
+    /**
+     * Returns <tt>true</tt> if this set contains the specified value.
+     * @param key value whose presence in this set is to be tested
+     * @return <tt>true</tt> if this set contains {@code key}
+     */
+    public boolean contains(int key) {
+        int position = lowerBound(key);
+        return position < to && data[position] == key;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+
+    private Integer boxed(int index) {
+        return index < 0 ? null : getInt(index);
+    }
+
+    @Override
+    public Integer lower(Integer t) {
+        return boxed(lowerIndex(t));
+    }
+
+    @Override
+    public Integer floor(Integer t) {
+        return boxed(floorIndex(t));
+    }
+
+    @Override
+    public Integer ceiling(Integer t) {
+        return boxed(ceilingIndex(t));
+    }
+
+    @Override
+    public Integer higher(Integer t) {
+        return boxed(higherIndex(t));
+    }
+
+    @Override
+    public Integer pollFirst() {
+        throw new UnsupportedOperationException("pollFirst");
+    }
+
+    @Override
+    public Integer pollLast() {
+        throw new UnsupportedOperationException("pollLast");
+    }
+
+    /**
+     * Returns the first (lowest in the order of this set) element.
+     * @return the first element
+     * @throws NoSuchElementException if this set is empty
+     */
+    public int firstInt() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return getInt(0);
+    }
+
+    /**
+     * Returns the last (highest in the order of this set) element.
+     * @return the last element
+     * @throws NoSuchElementException if this set is empty
+     */
+    public int lastInt() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return getInt(size() - 1);
+    }
+
+    @Override
+    public Integer first() {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() {
+        return lastInt();
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    /**
+     * Returns elements of this set in its order.
+     * @return new array of elements
+     */
+    public int[] toIntArray() {
+        int[] result = Arrays.copyOfRange(data, from, to);
+        if (descending) {
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                int t = result[i];
+                result[i] = result[j];
+                result[j] = t;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new Iter(descending);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt descendingIterator() {
+        return new Iter(!descending);
+    }
+
+    @Override
+    public IntArraySet descendingSet() {
+        return new IntArraySet(data, from, to, !descending);
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    private IntArraySet view(int lo, int hi) {
+        return new IntArraySet(data, lo, Math.max(lo, hi), descending);
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements range from
+     * {@code fromElement} to {@code toElement} in the order of this set.
+     *
+     * @param fromElement   low endpoint of the returned set
+     * @param fromInclusive {@code true} if the low endpoint is to be included in the returned view
+     * @param toElement     high endpoint of the returned set
+     * @param toInclusive   {@code true} if the high endpoint is to be included in the returned view
+     * @return view sharing the backing array with this set
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    public IntArraySet subSet(int fromElement, boolean fromInclusive, int toElement, boolean toInclusive) {
+        if (descending ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        if (descending) {
+            return view(toInclusive ? lowerBound(toElement) : upperBound(toElement),
+                    fromInclusive ? upperBound(fromElement) : lowerBound(fromElement));
+        }
+        return view(fromInclusive ? lowerBound(fromElement) : upperBound(fromElement),
+                toInclusive ? upperBound(toElement) : lowerBound(toElement));
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements precede
+     * (or are equal to, if {@code inclusive} is true) {@code toElement} in the order of this set.
+     * @param toElement high endpoint of the returned set
+     * @param inclusive {@code true} if the high endpoint is to be included in the returned view
+     * @return view sharing the backing array with this set
+     */
+    public IntArraySet headSet(int toElement, boolean inclusive) {
+        if (descending) {
+            return view(inclusive ? lowerBound(toElement) : upperBound(toElement), to);
+        }
+        return view(from, inclusive ? upperBound(toElement) : lowerBound(toElement));
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements follow
+     * (or are equal to, if {@code inclusive} is true) {@code fromElement} in the order of this set.
+     * @param fromElement low endpoint of the returned set
+     * @param inclusive {@code true} if the low endpoint is to be included in the returned view
+     * @return view sharing the backing array with this set
+     */
+    public IntArraySet tailSet(int fromElement, boolean inclusive) {
+        if (descending) {
+            return view(from, inclusive ? upperBound(fromElement) : lowerBound(fromElement));
+        }
+        return view(inclusive ? lowerBound(fromElement) : upperBound(fromElement), to);
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+        return subSet((int) fromElement, fromInclusive, (int) toElement, toInclusive);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement, boolean inclusive) {
+        return headSet((int) toElement, inclusive);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement, boolean inclusive) {
+        return tailSet((int) fromElement, inclusive);
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, Integer toElement) {
+        return subSet((int) fromElement, true, (int) toElement, false);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement) {
+        return headSet((int) toElement, false);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement) {
+        return tailSet((int) fromElement, true);
+    }
+
+    private class Iter implements PrimitiveIterator.OfInt {
+        private final boolean backward;
+        private int pos;
+
+        Iter(boolean backward) {
+            this.backward = backward;
+            this.pos = backward ? to : from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return backward ? pos > from : pos < to;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return backward ? data[--pos] : data[pos++];
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Fixed-width binary representation of set elements, used by {@link MappedArraySet}.
+ * <p>
+ * Records are compared in place, without decoding, so lookups in a mapped file don't allocate.
+ *
+ * @param <T> type of elements
+ * @author Ilnar Sabirzyanov
+ */
+public interface KeyFormat<T> {
+    /**
+     * Returns size of a record in bytes.
+     * @return record width
+     */
+    int width();
+
+    /**
+     * Writes {@code key} as {@link #width()} bytes at the position of {@code out}.
+     * @param key element to write
+     * @param out destination buffer
+     * @throws IllegalArgumentException if {@code key} can't be represented
+     */
+    void write(T key, ByteBuffer out);
+
+    /**
+     * Decodes record at the {@code offset} of {@code in}.
+     * @param in buffer with records
+     * @param offset position of the record
+     * @return element
+     */
+    T read(ByteBuffer in, int offset);
+
+    /**
+     * Compares record at the {@code offset} of {@code in} with {@code key}.
+     * @param in buffer with records
+     * @param offset position of the record
+     * @param key element to compare with
+     * @return negative, zero or positive if the record is less than, equal to or greater than {@code key}
+     */
+    int compare(ByteBuffer in, int offset, T key);
+
+    /**
+     * Returns order of the elements, or {@code null} for natural order.
+     * @return comparator of elements
+     */
+    Comparator<? super T> comparator();
+
+    /**
+     * Returns format of {@code long} keys in natural order, stored as 8 big-endian bytes.
+     * @return long format
+     */
+    static KeyFormat<Long> longs() {
+        return new KeyFormat<Long>() {
+            @Override
+            public int width() {
+                return Long.BYTES;
+            }
+
+            @Override
+            public void write(Long key, ByteBuffer out) {
+                out.putLong(key);
+            }
+
+            @Override
+            public Long read(ByteBuffer in, int offset) {
+                return in.getLong(offset);
+            }
+
+            @Override
+            public int compare(ByteBuffer in, int offset, Long key) {
+                return Long.compare(in.getLong(offset), key);
+            }
+
+            @Override
+            public Comparator<? super Long> comparator() {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Returns format of {@code byte[]} keys of the given length in unsigned lexicographic order.
+     * @param width length of every key
+     * @return byte array format
+     */
+    static KeyFormat<byte[]> bytes(int width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width should be positive: " + width);
+        }
+        Comparator<byte[]> order = (a, b) -> {
+            for (int i = 0; i < a.length && i < b.length; i++) {
+                int c = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Integer.compare(a.length, b.length);
+        };
+        return new KeyFormat<byte[]>() {
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public void write(byte[] key, ByteBuffer out) {
+                if (key.length != width) {
+                    throw new IllegalArgumentException("Key of " + key.length + " bytes, expected " + width);
+                }
+                out.put(key);
+            }
+
+            @Override
+            public byte[] read(ByteBuffer in, int offset) {
+                byte[] key = new byte[width];
+                for (int i = 0; i < width; i++) {
+                    key[i] = in.get(offset + i);
+                }
+                return key;
+            }
+
+            @Override
+            public int compare(ByteBuffer in, int offset, byte[] key) {
+                for (int i = 0; i < width && i < key.length; i++) {
+                    int c = Integer.compare(in.get(offset + i) & 0xff, key[i] & 0xff);
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                return Integer.compare(width, key.length);
+            }
+
+            @Override
+            public Comparator<? super byte[]> comparator() {
+                return order;
+            }
+        };
+    }
+}
@@ -0,0 +1,390 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of {@code long} values backed by a sorted {@code long[]}.
+ * <p>
+ * Unlike {@code ArraySet<Long>} it stores eight bytes per element and searches without boxing.
+ * Every boxed query has a primitive counterpart: {@link #contains(long)}, index-returning
+ * {@link #lowerIndex(long)}, {@link #floorIndex(long)}, {@link #ceilingIndex(long)},
+ * {@link #higherIndex(long)} together with {@link #getLong(int)}, and {@code long}-keyed views.
+ * Views and the descending set share the backing array with this set.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class LongArraySet extends AbstractSet<Long> implements NavigableSet<Long> {
+    private final long[] data;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+
+    public LongArraySet() {
+        this(new long[0], 0, 0, false);
+    }
+
+    /**
+     * Creates set of the {@code values}, in any order and possibly with duplicates.
+     * @param values elements of the set
+     */
+    public LongArraySet(long... values) {
+        this(distinct(values.clone()), false);
+    }
+
+    public LongArraySet(Collection<Long> col) {
+        this(distinct(toArray(col)), false);
+    }
+
+    private LongArraySet(long[] data, boolean descending) {
+        this(data, 0, data.length, descending);
+    }
+
+    private LongArraySet(long[] data, int from, int to, boolean descending) {
+        this.data = data;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    private static long[] toArray(Collection<Long> col) {
+        long[] values = new long[col.size()];
+        int i = 0;
+        for (long value : col) {
+            values[i++] = value;
+        }
+        return values;
+    }
+
+    private static long[] distinct(long[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (size == 0 || values[size - 1] != values[i]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns position of the first element greater than or equal to {@code key} in the backing array.
+     */
+    private int lowerBound(long key) {
+        int l = from;
+        int r = to;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (data[m] < key) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Returns position of the first element greater than {@code key} in the backing array.
+     */
+    private int upperBound(long key) {
+        int l = from;
+        int r = to;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (data[m] <= key) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    private int index(int position) {
+        if (position < from || position >= to) {
+            return -1;
+        }
+        return descending ? to - 1 - position : position - from;
+    }
+
+    /**
+     * Returns element at the {@code index} in the order of this set.
+     * @param index position of the element
+     * @return element
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public long getLong(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        return descending ? data[to - 1 - index] : data[from + index];
+    }
+
+    /**
+     * Returns index of the greatest element strictly less than {@code key} in the order of this set.
+     * @param key the value to match
+     * @return index for {@link #getLong(int)} or {@code -1} if there is no such element
+     */
+    public int lowerIndex(long key) {
+        return index(descending ? upperBound(key) : lowerBound(key) - 1);
+    }
+
+    /**
+     * Returns index of the greatest element less than or equal to {@code key} in the order of this set.
+     * @param key the value to match
+     * @return index for {@link #getLong(int)} or {@code -1} if there is no such element
+     */
+    public int floorIndex(long key) {
+        return index(descending ? lowerBound(key) : upperBound(key) - 1);
+    }
+
+    /**
+     * Returns index of the least element greater than or equal to {@code key} in the order of this set.
+     * @param key the value to match
+     * @return index for {@link #getLong(int)} or {@code -1} if there is no such element
+     */
+    public int ceilingIndex(long key) {
+        return index(descending ? upperBound(key) - 1 : lowerBound(key));
+    }
+
+    /**
+     * Returns index of the least element strictly greater than {@code key} in the order of this set.
+     * @param key the value to match
+     * @return index for {@link #getLong(int)} or {@code -1} if there is no such element
+     */
+    public int higherIndex(long key) {
+        return index(descending ? lowerBound(key) - 1 : upperBound(key));
+    }
+
+    /**
+     * Returns <tt>true</tt> if this set contains the specified value.
+     * @param key value whose presence in this set is to be tested
+     * @return <tt>true</tt> if this set contains {@code key}
+     */
+    public boolean contains(long key) {
+        int position = lowerBound(key);
+        return position < to && data[position] == key;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains((long) (Long) o);
+    }
+
+    private Long boxed(int index) {
+        return index < 0 ? null : getLong(index);
+    }
+
+    @Override
+    public Long lower(Long t) {
+        return boxed(lowerIndex(t));
+    }
+
+    @Override
+    public Long floor(Long t) {
+        return boxed(floorIndex(t));
+    }
+
+    @Override
+    public Long ceiling(Long t) {
+        return boxed(ceilingIndex(t));
+    }
+
+    @Override
+    public Long higher(Long t) {
+        return boxed(higherIndex(t));
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException("pollFirst");
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException("pollLast");
+    }
+
+    /**
+     * Returns the first (lowest in the order of this set) element.
+     * @return the first element
+     * @throws NoSuchElementException if this set is empty
+     */
+    public long firstLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return getLong(0);
+    }
+
+    /**
+     * Returns the last (highest in the order of this set) element.
+     * @return the last element
+     * @throws NoSuchElementException if this set is empty
+     */
+    public long lastLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return getLong(size() - 1);
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    /**
+     * Returns elements of this set in its order.
+     * @return new array of elements
+     */
+    public long[] toLongArray() {
+        long[] result = Arrays.copyOfRange(data, from, to);
+        if (descending) {
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                long t = result[i];
+                result[i] = result[j];
+                result[j] = t;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new Iter(descending);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return new Iter(!descending);
+    }
+
+    @Override
+    public LongArraySet descendingSet() {
+        return new LongArraySet(data, from, to, !descending);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    private LongArraySet view(int lo, int hi) {
+        return new LongArraySet(data, lo, Math.max(lo, hi), descending);
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements range from
+     * {@code fromElement} to {@code toElement} in the order of this set.
+     *
+     * @param fromElement   low endpoint of the returned set
+     * @param fromInclusive {@code true} if the low endpoint is to be included in the returned view
+     * @param toElement     high endpoint of the returned set
+     * @param toInclusive   {@code true} if the high endpoint is to be included in the returned view
+     * @return view sharing the backing array with this set
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    public LongArraySet subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        if (descending ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        if (descending) {
+            return view(toInclusive ? lowerBound(toElement) : upperBound(toElement),
+                    fromInclusive ? upperBound(fromElement) : lowerBound(fromElement));
+        }
+        return view(fromInclusive ? lowerBound(fromElement) : upperBound(fromElement),
+                toInclusive ? upperBound(toElement) : lowerBound(toElement));
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements precede
+     * (or are equal to, if {@code inclusive} is true) {@code toElement} in the order of this set.
+     * @param toElement high endpoint of the returned set
+     * @param inclusive {@code true} if the high endpoint is to be included in the returned view
+     * @return view sharing the backing array with this set
+     */
+    public LongArraySet headSet(long toElement, boolean inclusive) {
+        if (descending) {
+            return view(inclusive ? lowerBound(toElement) : upperBound(toElement), to);
+        }
+        return view(from, inclusive ? upperBound(toElement) : lowerBound(toElement));
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements follow
+     * (or are equal to, if {@code inclusive} is true) {@code fromElement} in the order of this set.
+     * @param fromElement low endpoint of the returned set
+     * @param inclusive {@code true} if the low endpoint is to be included in the returned view
+     * @return view sharing the backing array with this set
+     */
+    public LongArraySet tailSet(long fromElement, boolean inclusive) {
+        if (descending) {
+            return view(from, inclusive ? upperBound(fromElement) : lowerBound(fromElement));
+        }
+        return view(inclusive ? lowerBound(fromElement) : upperBound(fromElement), to);
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        return subSet((long) fromElement, fromInclusive, (long) toElement, toInclusive);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement, boolean inclusive) {
+        return headSet((long) toElement, inclusive);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return tailSet((long) fromElement, inclusive);
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, Long toElement) {
+        return subSet((long) fromElement, true, (long) toElement, false);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement) {
+        return headSet((long) toElement, false);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement) {
+        return tailSet((long) fromElement, true);
+    }
+
+    private class Iter implements PrimitiveIterator.OfLong {
+        private final boolean backward;
+        private int pos;
+
+        Iter(boolean backward) {
+            this.backward = backward;
+            this.pos = backward ? to : from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return backward ? pos > from : pos < to;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return backward ? data[--pos] : data[pos++];
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} backed by a memory-mapped file of sorted fixed-width records.
+ * <p>
+ * The file starts with a 16-byte header (magic, record width, number of records) followed by
+ * the records in increasing order, as produced by {@link Writer}. Opening a set maps the file
+ * without reading it, so startup takes constant time and the heap footprint doesn't depend on
+ * the number of elements: pages are loaded by the OS on first access and may be evicted under
+ * memory pressure. Files larger than 2 GB are mapped in several regions.
+ * <p>
+ * Lookups compare records in place through {@link KeyFormat}. Views and the descending set
+ * share the mapping. Elements are decoded on access, so {@code byte[]} elements returned
+ * by the set are fresh arrays.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class MappedArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int MAGIC = 0x4d415331;
+    private static final int HEADER = 16;
+    private static final long REGION = 1 << 30;
+
+    private final KeyFormat<T> format;
+    private final ByteBuffer[] regions;
+    private final long perRegion;
+    private final long from;
+    private final long to;
+    private final boolean descending;
+
+    private MappedArraySet(KeyFormat<T> format, ByteBuffer[] regions, long perRegion,
+                           long from, long to, boolean descending) {
+        this.format = format;
+        this.regions = regions;
+        this.perRegion = perRegion;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    /**
+     * Maps set from the {@code file} written by {@link Writer}.
+     * @param file file with records
+     * @param format format of records
+     * @param <T> type of elements
+     * @return set backed by the file
+     * @throws IOException if file can't be mapped or isn't a valid set for {@code format}
+     */
+    public static <T> MappedArraySet<T> open(Path file, KeyFormat<T> format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                throw new IOException("Not a mapped set: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a mapped set: " + file);
+            }
+            int width = header.getInt();
+            long count = header.getLong();
+            if (width != format.width()) {
+                throw new IOException("Records of " + width + " bytes, expected " + format.width());
+            }
+            if (channel.size() != HEADER + count * width) {
+                throw new IOException("Mapped set " + file + " is truncated");
+            }
+            long perRegion = REGION / width;
+            ByteBuffer[] regions = new ByteBuffer[(int) ((count + perRegion - 1) / perRegion)];
+            for (int i = 0; i < regions.length; i++) {
+                long records = Math.min(perRegion, count - i * perRegion);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + i * perRegion * width,
+                        records * width);
+            }
+            return new MappedArraySet<>(format, regions, perRegion, 0, count, false);
+        }
+    }
+
+    private int compare(long i, T key) {
+        return format.compare(regions[(int) (i / perRegion)], (int) (i % perRegion) * format.width(), key);
+    }
+
+    private T read(long i) {
+        return format.read(regions[(int) (i / perRegion)], (int) (i % perRegion) * format.width());
+    }
+
+    /**
+     * Returns position of the first record not less than {@code key}.
+     */
+    private long lowerBound(T key) {
+        long l = from;
+        long r = to;
+        while (l < r) {
+            long m = (l + r) >>> 1;
+            if (compare(m, key) < 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Returns position of the first record greater than {@code key}.
+     */
+    private long upperBound(T key) {
+        long l = from;
+        long r = to;
+        while (l < r) {
+            long m = (l + r) >>> 1;
+            if (compare(m, key) <= 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    private T at(long position) {
+        return from <= position && position < to ? read(position) : null;
+    }
+
+    @Override
+    public T lower(T t) {
+        return at(descending ? upperBound(t) : lowerBound(t) - 1);
+    }
+
+    @Override
+    public T floor(T t) {
+        return at(descending ? lowerBound(t) : upperBound(t) - 1);
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return at(descending ? upperBound(t) - 1 : lowerBound(t));
+    }
+
+    @Override
+    public T higher(T t) {
+        return at(descending ? lowerBound(t) - 1 : upperBound(t));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        long position = lowerBound((T) o);
+        return position < to && compare(position, (T) o) == 0;
+    }
+
+    @Override
+    public T pollFirst() {
+        throw new UnsupportedOperationException("pollFirst");
+    }
+
+    @Override
+    public T pollLast() {
+        throw new UnsupportedOperationException("pollLast");
+    }
+
+    @Override
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return read(descending ? to - 1 : from);
+    }
+
+    @Override
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return read(descending ? from : to - 1);
+    }
+
+    /**
+     * Returns number of elements, which may exceed {@link Integer#MAX_VALUE}.
+     * @return number of elements
+     */
+    public long count() {
+        return to - from;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, count());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return descending ? Collections.reverseOrder(format.comparator()) : format.comparator();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iter(descending);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new Iter(!descending);
+    }
+
+    @Override
+    public MappedArraySet<T> descendingSet() {
+        return new MappedArraySet<>(format, regions, perRegion, from, to, !descending);
+    }
+
+    private MappedArraySet<T> view(long lo, long hi) {
+        return new MappedArraySet<>(format, regions, perRegion, lo, Math.max(lo, hi), descending);
+    }
+
+    @Override
+    public MappedArraySet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        int c = ArraySet.order(format.comparator()).compare(fromElement, toElement);
+        if (descending ? c < 0 : c > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        if (descending) {
+            return view(toInclusive ? lowerBound(toElement) : upperBound(toElement),
+                    fromInclusive ? upperBound(fromElement) : lowerBound(fromElement));
+        }
+        return view(fromInclusive ? lowerBound(fromElement) : upperBound(fromElement),
+                toInclusive ? upperBound(toElement) : lowerBound(toElement));
+    }
+
+    @Override
+    public MappedArraySet<T> headSet(T toElement, boolean inclusive) {
+        if (descending) {
+            return view(inclusive ? lowerBound(toElement) : upperBound(toElement), to);
+        }
+        return view(from, inclusive ? upperBound(toElement) : lowerBound(toElement));
+    }
+
+    @Override
+    public MappedArraySet<T> tailSet(T fromElement, boolean inclusive) {
+        if (descending) {
+            return view(from, inclusive ? upperBound(fromElement) : lowerBound(fromElement));
+        }
+        return view(inclusive ? lowerBound(fromElement) : upperBound(fromElement), to);
+    }
+
+    @Override
+    public MappedArraySet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public MappedArraySet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public MappedArraySet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    private class Iter implements Iterator<T> {
+        private final boolean backward;
+        private long pos;
+
+        Iter(boolean backward) {
+            this.backward = backward;
+            this.pos = backward ? to : from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return backward ? pos > from : pos < to;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return read(backward ? --pos : pos++);
+        }
+    }
+
+    /**
+     * Writes file for {@link MappedArraySet#open(Path, KeyFormat)} from elements in increasing order.
+     */
+    public static class Writer<T> implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final KeyFormat<T> format;
+        private final Comparator<? super T> order;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private T previous;
+        private long count;
+
+        /**
+         * Creates or truncates {@code file} and prepares it for writing.
+         * @param file destination file
+         * @param format format of records
+         * @throws IOException if file can't be opened
+         */
+        public Writer(Path file, KeyFormat<T> format) throws IOException {
+            this.format = format;
+            this.order = ArraySet.order(format.comparator());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE / format.width(), 1) * format.width());
+            channel.position(HEADER);
+        }
+
+        /**
+         * Appends {@code key}, which should be greater than all previously added keys.
+         * @param key next element
+         * @throws IOException if record can't be written
+         * @throws IllegalArgumentException if keys are not strictly increasing
+         */
+        public void add(T key) throws IOException {
+            if (count > 0 && order.compare(previous, key) >= 0) {
+                throw new IllegalArgumentException("Keys should be strictly increasing");
+            }
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            format.write(key, buffer);
+            previous = key;
+            count++;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Writes the header and closes the file.
+         * @throws IOException if file can't be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(format.width()).putLong(count).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
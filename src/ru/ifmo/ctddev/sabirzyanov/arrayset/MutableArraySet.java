@@ -0,0 +1,679 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable {@link NavigableSet} with the read path of {@link ArraySet}.
+ * <p>
+ * Elements live in a sorted base array. Inserts go to a small sorted set of added elements,
+ * removals of base elements are marked in a bitmap of their positions. When these changes grow
+ * beyond {@code max(64, size / 64)} elements they are merged into a new base array in one linear
+ * pass, so a write costs {@code O(log n)} amortized and lookups stay a binary search plus
+ * a lookup in the added set. Navigation skips runs of removed base elements 64 at a time.
+ * <p>
+ * Iterators work over the base array, merging the changes first if needed, and support
+ * {@link Iterator#remove()}. Range views and the descending set are backed by the set: they keep
+ * bounds as elements, check them around the same lookups, and iterate a range of the base array.
+ * Not thread-safe.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class MutableArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int MIN_DELTA = 64;
+
+    private final Comparator<? super T> comp;
+    private final Comparator<? super T> order;
+    private final TreeSet<T> added;
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+    private Object[] base;
+    private int lo;
+    private int hi;
+    private int size;
+    private int modCount;
+
+    public MutableArraySet() {
+        this(Collections.emptyList(), null);
+    }
+
+    public MutableArraySet(Collection<? extends T> col) {
+        this(col, null);
+    }
+
+    public MutableArraySet(Collection<? extends T> col, Comparator<? super T> comp) {
+        this.comp = comp;
+        this.order = ArraySet.order(comp);
+        this.added = new TreeSet<>(comp);
+        this.base = ArraySet.sortedDistinct(col, comp);
+        this.hi = base.length;
+        this.size = base.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T at(int i) {
+        return (T) base[i];
+    }
+
+    /**
+     * Returns position of the first base element not less than {@code t}.
+     */
+    private int lowerBound(T t) {
+        int l = lo;
+        int r = hi;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (order.compare(at(m), t) < 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Returns position of base element equal to {@code t}, or {@code -1} if there is no such element.
+     */
+    private int position(T t) {
+        int i = lowerBound(t);
+        return i < hi && order.compare(at(i), t) == 0 ? i : -1;
+    }
+
+    /**
+     * Returns the first base element, starting from {@code i} and moving up or down by {@code step},
+     * that isn't removed.
+     */
+    private T fromBase(int i, int step) {
+        if (lo <= i && i < hi) {
+            i = step > 0 ? removed.nextClearBit(i) : removed.previousClearBit(i);
+        }
+        return lo <= i && i < hi ? at(i) : null;
+    }
+
+    private T max(T a, T b) {
+        return a == null ? b : b == null ? a : order.compare(a, b) >= 0 ? a : b;
+    }
+
+    private T min(T a, T b) {
+        return a == null ? b : b == null ? a : order.compare(a, b) <= 0 ? a : b;
+    }
+
+    @Override
+    public T lower(T t) {
+        return max(fromBase(lowerBound(t) - 1, -1), added.lower(t));
+    }
+
+    @Override
+    public T floor(T t) {
+        int i = lowerBound(t);
+        if (i >= hi || order.compare(at(i), t) > 0) {
+            i--;
+        }
+        return max(fromBase(i, -1), added.floor(t));
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return min(fromBase(lowerBound(t), 1), added.ceiling(t));
+    }
+
+    @Override
+    public T higher(T t) {
+        int i = lowerBound(t);
+        if (i < hi && order.compare(at(i), t) == 0) {
+            i++;
+        }
+        return min(fromBase(i, 1), added.higher(t));
+    }
+
+    private T lowest() {
+        return min(fromBase(lo, 1), added.isEmpty() ? null : added.first());
+    }
+
+    private T highest() {
+        return max(fromBase(hi - 1, -1), added.isEmpty() ? null : added.last());
+    }
+
+    @Override
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return lowest();
+    }
+
+    @Override
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return highest();
+    }
+
+    @Override
+    public T pollFirst() {
+        if (isEmpty()) {
+            return null;
+        }
+        T first = first();
+        remove(first);
+        return first;
+    }
+
+    @Override
+    public T pollLast() {
+        if (isEmpty()) {
+            return null;
+        }
+        T last = last();
+        remove(last);
+        return last;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        T t = (T) o;
+        int i = position(t);
+        return i >= 0 ? !removed.get(i) : !added.isEmpty() && added.contains(t);
+    }
+
+    @Override
+    public boolean add(T t) {
+        int i = position(t);
+        if (i >= 0) {
+            if (!removed.get(i)) {
+                return false;
+            }
+            removed.clear(i);
+            removedCount--;
+        } else if (!added.add(t)) {
+            return false;
+        }
+        size++;
+        changed();
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        T t = (T) o;
+        int i = position(t);
+        if (i >= 0) {
+            if (removed.get(i)) {
+                return false;
+            }
+            removeFromBase(i);
+        } else if (added.isEmpty() || !added.remove(t)) {
+            return false;
+        }
+        size--;
+        changed();
+        return true;
+    }
+
+    /**
+     * Removes base element at position {@code i}. Elements at the ends of the base are cut off
+     * without marking them, so repeated {@link #pollFirst()} and {@link #pollLast()} don't pile up removals.
+     */
+    private void removeFromBase(int i) {
+        if (i == lo) {
+            lo++;
+        } else if (i == hi - 1) {
+            hi--;
+        } else {
+            removed.set(i);
+            removedCount++;
+            return;
+        }
+        while (lo < hi && removed.get(lo)) {
+            removed.clear(lo++);
+            removedCount--;
+        }
+        while (lo < hi && removed.get(hi - 1)) {
+            removed.clear(--hi);
+            removedCount--;
+        }
+    }
+
+    @Override
+    public void clear() {
+        lo = 0;
+        hi = 0;
+        base = new Object[0];
+        added.clear();
+        removed.clear();
+        removedCount = 0;
+        size = 0;
+        modCount++;
+    }
+
+    private void changed() {
+        modCount++;
+        if (added.size() + removedCount > Math.max(MIN_DELTA, size >>> 6)) {
+            merge();
+        }
+    }
+
+    /**
+     * Merges added and removed elements into a new base array.
+     */
+    private void merge() {
+        if (added.isEmpty() && removedCount == 0) {
+            return;
+        }
+        Object[] merged = new Object[size];
+        int i = lo;
+        int j = 0;
+        for (T t : added) {
+            while (i < hi && order.compare(at(i), t) < 0) {
+                if (!removed.get(i)) {
+                    merged[j++] = base[i];
+                }
+                i++;
+            }
+            merged[j++] = t;
+        }
+        for (; i < hi; i++) {
+            if (!removed.get(i)) {
+                merged[j++] = base[i];
+            }
+        }
+        base = merged;
+        lo = 0;
+        hi = merged.length;
+        added.clear();
+        removed.clear();
+        removedCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comp;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        merge();
+        return new Iter(lo, hi, false);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        merge();
+        return new Iter(lo, hi, true);
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return new View(false, null, false, false, null, false, true);
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        if (order.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return new View(true, fromElement, fromInclusive, true, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return new View(false, null, false, true, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return new View(true, fromElement, inclusive, false, null, false, false);
+    }
+
+    /**
+     * Returns position of the first base element greater than {@code t} or equal to it, if {@code inclusive}.
+     */
+    private int start(T t, boolean inclusive) {
+        int i = lowerBound(t);
+        if (!inclusive && i < hi && order.compare(at(i), t) == 0) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Iterator over a base array. The array is never changed in place, so the iterator keeps
+     * working after its own removals merge the changes.
+     */
+    private class Iter implements Iterator<T> {
+        private final Object[] array = base;
+        private final int start;
+        private final int end;
+        private final boolean backward;
+        private int pos;
+        private int expectedModCount = modCount;
+        private Object last;
+        private boolean removable;
+
+        Iter(int start, int end, boolean backward) {
+            this.start = start;
+            this.end = end;
+            this.backward = backward;
+            this.pos = backward ? end - 1 : start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return backward ? pos >= start : pos < end;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = array[pos];
+            removable = true;
+            pos += backward ? -1 : 1;
+            return (T) last;
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            MutableArraySet.this.remove(last);
+            expectedModCount = modCount;
+            removable = false;
+        }
+    }
+
+    /**
+     * Range of the set in either direction, backed by the set. Bounds are elements, as positions
+     * in the base array change on merges. Lookups are made in ascending order by the set and
+     * checked against the bounds; a descending view swaps the lookups.
+     */
+    private class View extends AbstractSet<T> implements NavigableSet<T> {
+        private final boolean hasLow;
+        private final T low;
+        private final boolean lowInclusive;
+        private final boolean hasHigh;
+        private final T high;
+        private final boolean highInclusive;
+        private final boolean descending;
+
+        View(boolean hasLow, T low, boolean lowInclusive, boolean hasHigh, T high, boolean highInclusive,
+             boolean descending) {
+            this.hasLow = hasLow;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.hasHigh = hasHigh;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(T t) {
+            if (!hasLow) {
+                return false;
+            }
+            int c = order.compare(t, low);
+            return c < 0 || c == 0 && !lowInclusive;
+        }
+
+        private boolean tooHigh(T t) {
+            if (!hasHigh) {
+                return false;
+            }
+            int c = order.compare(t, high);
+            return c > 0 || c == 0 && !highInclusive;
+        }
+
+        private boolean inRange(T t) {
+            return !tooLow(t) && !tooHigh(t);
+        }
+
+        /**
+         * Checks bound of a nested view: an exclusive bound may be equal to the exclusive bound of this view.
+         */
+        private boolean inRange(T t, boolean inclusive) {
+            return inclusive ? inRange(t)
+                    : (!hasLow || order.compare(t, low) >= 0) && (!hasHigh || order.compare(t, high) <= 0);
+        }
+
+        private T belowHigh(T t) {
+            return t == null || tooHigh(t) ? null : t;
+        }
+
+        private T aboveLow(T t) {
+            return t == null || tooLow(t) ? null : t;
+        }
+
+        private T lowestInRange() {
+            return belowHigh(!hasLow ? lowest() : lowInclusive ? MutableArraySet.this.ceiling(low)
+                    : MutableArraySet.this.higher(low));
+        }
+
+        private T highestInRange() {
+            return aboveLow(!hasHigh ? highest() : highInclusive ? MutableArraySet.this.floor(high)
+                    : MutableArraySet.this.lower(high));
+        }
+
+        private T ceilingInRange(T t) {
+            return tooLow(t) ? lowestInRange() : belowHigh(MutableArraySet.this.ceiling(t));
+        }
+
+        private T higherInRange(T t) {
+            return tooLow(t) ? lowestInRange() : belowHigh(MutableArraySet.this.higher(t));
+        }
+
+        private T floorInRange(T t) {
+            return tooHigh(t) ? highestInRange() : aboveLow(MutableArraySet.this.floor(t));
+        }
+
+        private T lowerInRange(T t) {
+            return tooHigh(t) ? highestInRange() : aboveLow(MutableArraySet.this.lower(t));
+        }
+
+        @Override
+        public T lower(T t) {
+            return descending ? higherInRange(t) : lowerInRange(t);
+        }
+
+        @Override
+        public T floor(T t) {
+            return descending ? ceilingInRange(t) : floorInRange(t);
+        }
+
+        @Override
+        public T ceiling(T t) {
+            return descending ? floorInRange(t) : ceilingInRange(t);
+        }
+
+        @Override
+        public T higher(T t) {
+            return descending ? lowerInRange(t) : higherInRange(t);
+        }
+
+        @Override
+        public T first() {
+            T first = descending ? highestInRange() : lowestInRange();
+            if (first == null) {
+                throw new NoSuchElementException();
+            }
+            return first;
+        }
+
+        @Override
+        public T last() {
+            T last = descending ? lowestInRange() : highestInRange();
+            if (last == null) {
+                throw new NoSuchElementException();
+            }
+            return last;
+        }
+
+        @Override
+        public T pollFirst() {
+            T first = descending ? highestInRange() : lowestInRange();
+            if (first != null) {
+                MutableArraySet.this.remove(first);
+            }
+            return first;
+        }
+
+        @Override
+        public T pollLast() {
+            T last = descending ? lowestInRange() : highestInRange();
+            if (last != null) {
+                MutableArraySet.this.remove(last);
+            }
+            return last;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return inRange((T) o) && MutableArraySet.this.contains(o);
+        }
+
+        @Override
+        public boolean add(T t) {
+            if (!inRange(t)) {
+                throw new IllegalArgumentException("Element out of range");
+            }
+            return MutableArraySet.this.add(t);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            return inRange((T) o) && MutableArraySet.this.remove(o);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return lowestInRange() == null;
+        }
+
+        /**
+         * Counts elements of the range by two binary searches, merging the changes first.
+         */
+        @Override
+        public int size() {
+            merge();
+            return end() - begin();
+        }
+
+        /**
+         * Returns position of the first base element in range. The changes must be merged.
+         */
+        private int begin() {
+            return hasLow ? start(low, lowInclusive) : lo;
+        }
+
+        /**
+         * Returns position after the last base element in range. The changes must be merged.
+         */
+        private int end() {
+            return Math.max(begin(), hasHigh ? start(high, !highInclusive) : hi);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            merge();
+            return new Iter(begin(), end(), descending);
+        }
+
+        @Override
+        public Iterator<T> descendingIterator() {
+            merge();
+            return new Iter(begin(), end(), !descending);
+        }
+
+        @Override
+        public Comparator<? super T> comparator() {
+            return descending ? Collections.reverseOrder(comp) : comp;
+        }
+
+        @Override
+        public NavigableSet<T> descendingSet() {
+            return new View(hasLow, low, lowInclusive, hasHigh, high, highInclusive, !descending);
+        }
+
+        /**
+         * Returns view of the range between given bounds in the order of this view.
+         */
+        private NavigableSet<T> view(boolean hasFrom, T from, boolean fromInclusive,
+                                     boolean hasTo, T to, boolean toInclusive) {
+            if (hasFrom && !inRange(from, fromInclusive) || hasTo && !inRange(to, toInclusive)) {
+                throw new IllegalArgumentException("Element out of range");
+            }
+            if (descending) {
+                return new View(hasTo || hasLow, hasTo ? to : low, hasTo ? toInclusive : lowInclusive,
+                        hasFrom || hasHigh, hasFrom ? from : high, hasFrom ? fromInclusive : highInclusive, true);
+            }
+            return new View(hasFrom || hasLow, hasFrom ? from : low, hasFrom ? fromInclusive : lowInclusive,
+                    hasTo || hasHigh, hasTo ? to : high, hasTo ? toInclusive : highInclusive, false);
+        }
+
+        @Override
+        public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+            if ((descending ? -1 : 1) * order.compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+            return view(true, fromElement, fromInclusive, true, toElement, toInclusive);
+        }
+
+        @Override
+        public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+            return view(false, null, false, true, toElement, inclusive);
+        }
+
+        @Override
+        public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+            return view(true, fromElement, inclusive, false, null, false);
+        }
+
+        @Override
+        public SortedSet<T> subSet(T fromElement, T toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> headSet(T toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> tailSet(T fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
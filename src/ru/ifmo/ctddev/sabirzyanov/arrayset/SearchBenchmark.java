@@ -0,0 +1,78 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares lookup time of {@link ArraySet} with and without {@link EytzingerIndex}
+ * on sets from one thousand to {@code maxSize} elements, and of repeated single lookups
+ * with {@link ArraySet#ceilingAll(List, boolean)} on the same probes sorted.
+ * <p>
+ * Probes are random, so on large sets nearly every step of binary search misses the cache.
+ * Sets of 100M elements need about 6 GB of heap.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class SearchBenchmark {
+    private static final int PROBES = 1 << 20;
+
+    /**
+     * Runs the benchmark.
+     * @param args [rounds [maxSize]]
+     */
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        Random random = new Random(239);
+        for (int size = 1_000; size <= maxSize; size *= 10) {
+            List<Integer> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(2 * i);
+            }
+            Integer[] probes = new Integer[PROBES];
+            for (int i = 0; i < PROBES; i++) {
+                probes[i] = random.nextInt(2 * size);
+            }
+            Integer[] sorted = probes.clone();
+            Arrays.sort(sorted);
+            List<Integer> batch = Arrays.asList(sorted);
+            ArraySet<Integer> plain = new ArraySet<>(values, null, false);
+            ArraySet<Integer> indexed = new ArraySet<>(values, null, true);
+            values = null;
+            for (int round = 0; round < rounds; round++) {
+                System.out.printf("size %11d  round %d  binary search %6.1f ns  eytzinger %6.1f ns  "
+                                + "sorted single %6.1f ns  sorted batch %6.1f ns%n",
+                        size, round, measure(plain, probes), measure(indexed, probes),
+                        measure(plain, sorted), measureBatch(plain, batch));
+            }
+        }
+    }
+
+    private static double measureBatch(ArraySet<Integer> set, List<Integer> probes) {
+        long start = System.nanoTime();
+        List<Integer> ceilings = set.ceilingAll(probes, false);
+        double nanos = (System.nanoTime() - start) / (double) probes.size();
+        if (ceilings.size() != probes.size()) {
+            throw new AssertionError();
+        }
+        return nanos;
+    }
+
+    private static double measure(ArraySet<Integer> set, Integer[] probes) {
+        long found = 0;
+        long start = System.nanoTime();
+        for (Integer probe : probes) {
+            Integer ceiling = set.ceiling(probe);
+            if (ceiling != null) {
+                found += ceiling;
+            }
+        }
+        double nanos = (System.nanoTime() - start) / (double) probes.length;
+        if (found == 42) {
+            System.out.println();
+        }
+        return nanos;
+    }
+}
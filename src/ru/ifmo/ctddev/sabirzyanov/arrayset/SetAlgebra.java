@@ -0,0 +1,240 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Set operations on sorted lists without duplicates.
+ * <p>
+ * Lists of similar sizes are merged linearly. When one list is much larger, every element
+ * of the smaller one is located in the larger with galloping (exponential) search, so
+ * intersection of {@code m} and {@code n} elements takes {@code O(m log(n / m))} comparisons.
+ * Large inputs may be split into independent ranges processed by the common fork-join pool.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+class SetAlgebra {
+    private static final int GALLOP_RATIO = 8;
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Set operation, described by which elements it keeps.
+     */
+    enum Operation {
+        UNION(true, true, true),
+        INTERSECTION(false, true, false),
+        DIFFERENCE(true, false, false),
+        SYMMETRIC_DIFFERENCE(true, false, true);
+
+        private final boolean onlyFirst;
+        private final boolean both;
+        private final boolean onlySecond;
+
+        Operation(boolean onlyFirst, boolean both, boolean onlySecond) {
+            this.onlyFirst = onlyFirst;
+            this.both = both;
+            this.onlySecond = onlySecond;
+        }
+    }
+
+    private SetAlgebra() {
+    }
+
+    /**
+     * Applies {@code operation} to sorted lists.
+     * @param operation set operation
+     * @param a first operand, sorted by {@code order} without duplicates
+     * @param b second operand, sorted by {@code order} without duplicates
+     * @param order order of the elements
+     * @param parallel whether large inputs may be processed in parallel
+     * @param <T> type of elements
+     * @return sorted result without duplicates
+     */
+    static <T> List<T> apply(Operation operation, List<T> a, List<T> b, Comparator<? super T> order,
+                             boolean parallel) {
+        if (parallel && a.size() + b.size() >= PARALLEL_THRESHOLD) {
+            return new Task<>(operation, a, b, order).invoke();
+        }
+        List<T> result = new ArrayList<>(capacity(operation, a.size(), b.size()));
+        apply(operation, a, b, order, result);
+        return result;
+    }
+
+    private static int capacity(Operation operation, int a, int b) {
+        switch (operation) {
+            case INTERSECTION:
+                return Math.min(a, b);
+            case DIFFERENCE:
+                return a;
+            default:
+                return a + b;
+        }
+    }
+
+    private static <T> void apply(Operation operation, List<T> a, List<T> b, Comparator<? super T> order,
+                                  List<T> result) {
+        if (b.size() >= GALLOP_RATIO * a.size()) {
+            gallop(a, b, order, operation.onlyFirst, operation.both, operation.onlySecond, result);
+        } else if (a.size() >= GALLOP_RATIO * b.size()) {
+            gallop(b, a, order, operation.onlySecond, operation.both, operation.onlyFirst, result);
+        } else {
+            merge(a, b, order, operation, result);
+        }
+    }
+
+    private static <T> void merge(List<T> a, List<T> b, Comparator<? super T> order, Operation operation,
+                                  List<T> result) {
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            T x = a.get(i);
+            T y = b.get(j);
+            int c = order.compare(x, y);
+            if (c < 0) {
+                if (operation.onlyFirst) {
+                    result.add(x);
+                }
+                i++;
+            } else if (c > 0) {
+                if (operation.onlySecond) {
+                    result.add(y);
+                }
+                j++;
+            } else {
+                if (operation.both) {
+                    result.add(x);
+                }
+                i++;
+                j++;
+            }
+        }
+        if (operation.onlyFirst) {
+            result.addAll(a.subList(i, a.size()));
+        }
+        if (operation.onlySecond) {
+            result.addAll(b.subList(j, b.size()));
+        }
+    }
+
+    /**
+     * Walks the {@code small} list and gallops over the {@code large} one. Runs of the large list
+     * between elements of the small one are copied in bulk if they are kept.
+     */
+    private static <T> void gallop(List<T> small, List<T> large, Comparator<? super T> order,
+                                   boolean onlySmall, boolean both, boolean onlyLarge, List<T> result) {
+        int j = 0;
+        for (T x : small) {
+            int k = lowerBound(large, j, x, order);
+            if (onlyLarge) {
+                result.addAll(large.subList(j, k));
+            }
+            if (k < large.size() && order.compare(large.get(k), x) == 0) {
+                if (both) {
+                    result.add(large.get(k));
+                }
+                k++;
+            } else if (onlySmall) {
+                result.add(x);
+            }
+            j = k;
+        }
+        if (onlyLarge) {
+            result.addAll(large.subList(j, large.size()));
+        }
+    }
+
+    /**
+     * Returns position of the first element of {@code list} not less than {@code key},
+     * searching from {@code from} with exponentially growing steps.
+     */
+    static <T> int lowerBound(List<T> list, int from, T key, Comparator<? super T> order) {
+        int step = 1;
+        int l = from;
+        int r = from;
+        while (r < list.size() && order.compare(list.get(r), key) < 0) {
+            l = r + 1;
+            r = (int) Math.min(list.size(), (long) r + step);
+            step <<= 1;
+        }
+        r = Math.min(r, list.size());
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (order.compare(list.get(m), key) < 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Checks whether sorted {@code a} contains all elements of sorted {@code b}.
+     * @param a sorted list without duplicates
+     * @param b sorted list without duplicates
+     * @param order order of the elements
+     * @param <T> type of elements
+     * @return {@code true} if {@code b} is a subset of {@code a}
+     */
+    static <T> boolean containsAll(List<T> a, List<T> b, Comparator<? super T> order) {
+        if (b.size() > a.size()) {
+            return false;
+        }
+        int i = 0;
+        for (T x : b) {
+            i = lowerBound(a, i, x, order);
+            if (i == a.size() || order.compare(a.get(i), x) != 0) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    /**
+     * Splits the larger operand at its middle element and the other one at the same key,
+     * so both halves can be processed independently and concatenated.
+     */
+    private static class Task<T> extends RecursiveTask<List<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Operation operation;
+        private final List<T> a;
+        private final List<T> b;
+        private final Comparator<? super T> order;
+
+        Task(Operation operation, List<T> a, List<T> b, Comparator<? super T> order) {
+            this.operation = operation;
+            this.a = a;
+            this.b = b;
+            this.order = order;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (a.size() + b.size() < PARALLEL_THRESHOLD) {
+                List<T> result = new ArrayList<>(capacity(operation, a.size(), b.size()));
+                apply(operation, a, b, order, result);
+                return result;
+            }
+            int i;
+            int j;
+            if (a.size() >= b.size()) {
+                i = a.size() / 2;
+                j = lowerBound(b, 0, a.get(i), order);
+            } else {
+                j = b.size() / 2;
+                i = lowerBound(a, 0, b.get(j), order);
+            }
+            Task<T> left = new Task<>(operation, a.subList(0, i), b.subList(0, j), order);
+            Task<T> right = new Task<>(operation, a.subList(i, a.size()), b.subList(j, b.size()), order);
+            left.fork();
+            List<T> tail = right.compute();
+            List<T> result = left.join();
+            result.addAll(tail);
+            return result;
+        }
+    }
+}
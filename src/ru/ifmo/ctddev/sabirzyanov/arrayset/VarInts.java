@@ -0,0 +1,34 @@
+package ru.ifmo.ctddev.sabirzyanov.arrayset;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length encoding of unsigned values: seven bits per byte, lowest first,
+ * the high bit set on every byte but the last.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+class VarInts {
+    private VarInts() {
+    }
+
+    static void write(long value, ByteArrayOutputStream out) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long read(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
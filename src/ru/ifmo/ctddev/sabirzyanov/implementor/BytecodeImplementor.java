@@ -0,0 +1,374 @@
+package ru.ifmo.ctddev.sabirzyanov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import info.kgeorgiy.java.advanced.implementor.JarImpler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Implementor, which writes class files of implementations directly, without Java compiler.
+ * <p>
+ * Generated classes are the same as compiled by {@link Implementor}: constructors pass their
+ * arguments to the super constructors and abstract methods return default values. Class files
+ * are of Java 8 version and need no stack map frames, as the generated code has no branches.
+ * So JARs are made in milliseconds and on a JRE. Sources are still generated by {@link Implementor}.
+ *
+ * @author Ilnar
+ */
+public class BytecodeImplementor implements JarImpler {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 52;
+    private static final int ACC_SUPER = 0x20;
+    private static final int ACC_BRIDGE = 0x40;
+    private static final int ACC_VARARGS = 0x80;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    private final JarWriter jarWriter;
+
+    /**
+     * Creates implementor, which writes JARs with default {@link JarWriter}.
+     */
+    public BytecodeImplementor() {
+        this(new JarWriter());
+    }
+
+    /**
+     * Creates implementor, which writes JARs with {@code jarWriter}.
+     * @param jarWriter writer of JARs, which sets their compression and update mode
+     */
+    public BytecodeImplementor(JarWriter jarWriter) {
+        this.jarWriter = jarWriter;
+    }
+
+    /**
+     * Writes source of the implementation with {@link Implementor}.
+     * @param token type token to create implementation for.
+     * @param root root directory.
+     * @throws ImplerException when implementation cannot be generated.
+     */
+    @Override
+    public void implement(Class<?> token, Path root) throws ImplerException {
+        new Implementor().implement(token, root);
+    }
+
+    /**
+     * Writes JAR with class file of the implementation.
+     * @param token type token to create implementation for.
+     * @param jarFile target <tt>.jar</tt> file.
+     * @throws ImplerException when implementation cannot be generated or JAR can't be written.
+     */
+    @Override
+    public void implementJar(Class<?> token, Path jarFile) throws ImplerException {
+        if (token == null || jarFile == null) {
+            throw new ImplerException("One or more arguments are null");
+        }
+        implementJar(Collections.singletonList(token), jarFile);
+    }
+
+    /**
+     * Writes JAR with class files of implementations of all {@code tokens}.
+     * @param tokens type tokens to create implementations for.
+     * @param jarFile target <tt>.jar</tt> file.
+     * @throws ImplerException when any implementation cannot be generated, two classes have implementations
+     * with the same name or JAR can't be written.
+     */
+    public void implementJar(Collection<Class<?>> tokens, Path jarFile) throws ImplerException {
+        if (tokens == null || jarFile == null || tokens.contains(null)) {
+            throw new ImplerException("One or more arguments are null");
+        }
+        Implementor.checkNames(tokens);
+        Map<String, byte[]> classes = new TreeMap<>();
+        for (Class<?> token : tokens) {
+            classes.put(Implementor.getClassEntry(token), generate(token));
+        }
+        Implementor.writeJar(jarWriter, classes, jarFile);
+    }
+
+    /**
+     * Generates class file of the {@code token} implementation.
+     * @param token class or interface to implement
+     * @return class file
+     * @throws ImplerException if {@code token} can't be extended or got no non-private constructors
+     */
+    byte[] generate(Class<?> token) throws ImplerException {
+        return generate(token, Implementor.getClassName(token));
+    }
+
+    /**
+     * Generates class file of the {@code token} implementation with the given name.
+     * @param token class or interface to implement
+     * @param className binary name of the implementation
+     * @return class file
+     * @throws ImplerException if {@code token} can't be extended or got no non-private constructors
+     */
+    byte[] generate(Class<?> token, String className) throws ImplerException {
+        if (token.isPrimitive() || token.isArray() || token.isEnum() || token == Enum.class
+                || Modifier.isFinal(token.getModifiers())) {
+            throw new ImplerException("Can't implement " + token.getName());
+        }
+        List<Constructor<?>> constructors = new ArrayList<>();
+        if (!token.isInterface()) {
+            for (Constructor<?> cons : token.getDeclaredConstructors()) {
+                if (!Modifier.isPrivate(cons.getModifiers())) {
+                    constructors.add(cons);
+                }
+            }
+            if (constructors.isEmpty()) {
+                throw new ImplerException("No non public constructor");
+            }
+        }
+        ConstantPool pool = new ConstantPool();
+        String name = className.replace('.', '/');
+        String parent = token.isInterface() ? "java/lang/Object" : token.getName().replace('.', '/');
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream body = new DataOutputStream(bytes)) {
+            body.writeShort(Modifier.PUBLIC | ACC_SUPER);
+            body.writeShort(pool.classRef(name));
+            body.writeShort(pool.classRef(parent));
+            if (token.isInterface()) {
+                body.writeShort(1);
+                body.writeShort(pool.classRef(token.getName().replace('.', '/')));
+            } else {
+                body.writeShort(0);
+            }
+            body.writeShort(0);
+            List<List<Method>> methods = Implementor.collectAbstractMethods(token);
+            body.writeShort(Math.max(constructors.size(), 1) + methods.stream().mapToInt(List::size).sum());
+            if (token.isInterface()) {
+                constructor(body, pool, parent, Modifier.PUBLIC, new Class<?>[0], new Class<?>[0]);
+            }
+            for (Constructor<?> cons : constructors) {
+                constructor(body, pool, parent, cons.getModifiers(), cons.getParameterTypes(), cons.getExceptionTypes());
+            }
+            for (List<Method> group : methods) {
+                for (int i = 0; i < group.size(); i++) {
+                    method(body, pool, group.get(i), i > 0);
+                }
+            }
+            body.writeShort(0);
+        } catch (IOException e) {
+            throw new AssertionError("Writing to memory failed", e);
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(result)) {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            pool.write(out);
+            bytes.writeTo(out);
+        } catch (IOException e) {
+            throw new AssertionError("Writing to memory failed", e);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Writes constructor passing all its arguments to the super constructor.
+     */
+    private void constructor(DataOutputStream out, ConstantPool pool, String parent, int modifiers,
+                             Class<?>[] params, Class<?>[] exceptions) throws IOException {
+        String descriptor = descriptor(params, void.class);
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        code.write(0x2a);
+        int slot = 1;
+        for (Class<?> param : params) {
+            load(code, param, slot);
+            slot += size(param);
+        }
+        code.write(0xb7);
+        writeShort(code, pool.methodRef(parent, "<init>", descriptor));
+        code.write(0xb1);
+        member(out, pool, modifiers & (Modifier.PUBLIC | Modifier.PROTECTED), "<init>", descriptor,
+                slot, slot, code.toByteArray(), exceptions);
+    }
+
+    /**
+     * Writes method returning default value of its return type. Bridge methods for overridden methods
+     * with less specific return types return the default value as well instead of calling the main one.
+     */
+    private void method(DataOutputStream out, ConstantPool pool, Method method, boolean bridge) throws IOException {
+        Class<?> type = method.getReturnType();
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        if (type == void.class) {
+            code.write(0xb1);
+        } else if (type == long.class) {
+            code.write(0x09);
+            code.write(0xad);
+        } else if (type == float.class) {
+            code.write(0x0b);
+            code.write(0xae);
+        } else if (type == double.class) {
+            code.write(0x0e);
+            code.write(0xaf);
+        } else if (type.isPrimitive()) {
+            code.write(0x03);
+            code.write(0xac);
+        } else {
+            code.write(0x01);
+            code.write(0xb0);
+        }
+        int locals = 1;
+        for (Class<?> param : method.getParameterTypes()) {
+            locals += size(param);
+        }
+        int modifiers = method.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED);
+        if (bridge) {
+            modifiers |= ACC_BRIDGE | ACC_SYNTHETIC;
+        }
+        member(out, pool, method.isVarArgs() ? modifiers | ACC_VARARGS : modifiers, method.getName(),
+                descriptor(method.getParameterTypes(), type), size(type), locals, code.toByteArray(),
+                method.getExceptionTypes());
+    }
+
+    /**
+     * Writes method_info structure with {@code Code} and {@code Exceptions} attributes.
+     */
+    private void member(DataOutputStream out, ConstantPool pool, int access, String name, String descriptor,
+                        int maxStack, int maxLocals, byte[] code, Class<?>[] exceptions) throws IOException {
+        out.writeShort(access);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(descriptor));
+        out.writeShort(exceptions.length == 0 ? 1 : 2);
+        out.writeShort(pool.utf8("Code"));
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+        if (exceptions.length != 0) {
+            out.writeShort(pool.utf8("Exceptions"));
+            out.writeInt(2 + 2 * exceptions.length);
+            out.writeShort(exceptions.length);
+            for (Class<?> exception : exceptions) {
+                out.writeShort(pool.classRef(exception.getName().replace('.', '/')));
+            }
+        }
+    }
+
+    private static void load(ByteArrayOutputStream code, Class<?> type, int slot) {
+        int opcode;
+        if (type == long.class) {
+            opcode = 0x16;
+        } else if (type == float.class) {
+            opcode = 0x17;
+        } else if (type == double.class) {
+            opcode = 0x18;
+        } else if (type.isPrimitive()) {
+            opcode = 0x15;
+        } else {
+            opcode = 0x19;
+        }
+        if (slot < 256) {
+            code.write(opcode);
+            code.write(slot);
+        } else {
+            code.write(0xc4);
+            code.write(opcode);
+            writeShort(code, slot);
+        }
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Returns number of local variable slots taken by a value of {@code type}.
+     */
+    private static int size(Class<?> type) {
+        return type == void.class ? 0 : type == long.class || type == double.class ? 2 : 1;
+    }
+
+    static String descriptor(Class<?>[] params, Class<?> result) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Class<?> param : params) {
+            descriptor.append(descriptor(param));
+        }
+        return descriptor.append(")").append(descriptor(result)).toString();
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        }
+        if (!type.isPrimitive()) {
+            return "L" + type.getName().replace('.', '/') + ";";
+        }
+        if (type == void.class) {
+            return "V";
+        }
+        if (type == boolean.class) {
+            return "Z";
+        }
+        if (type == long.class) {
+            return "J";
+        }
+        return String.valueOf(Character.toUpperCase(type.getName().charAt(0)));
+    }
+
+    /**
+     * Constant pool of a class file, without duplicate entries.
+     */
+    private static class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int CLASS = 7;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        int utf8(String value) throws IOException {
+            Integer index = indices.get("U" + value);
+            if (index == null) {
+                out.writeByte(UTF8);
+                out.writeUTF(value);
+                index = add("U" + value);
+            }
+            return index;
+        }
+
+        int classRef(String name) throws IOException {
+            return entry("C" + name, CLASS, utf8(name));
+        }
+
+        int methodRef(String owner, String name, String descriptor) throws IOException {
+            int nameAndType = entry("N" + name + descriptor, NAME_AND_TYPE, utf8(name), utf8(descriptor));
+            return entry("M" + owner + "." + name + descriptor, METHOD_REF, classRef(owner), nameAndType);
+        }
+
+        private int entry(String key, int tag, int... refs) throws IOException {
+            Integer index = indices.get(key);
+            if (index == null) {
+                out.writeByte(tag);
+                for (int ref : refs) {
+                    out.writeShort(ref);
+                }
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int add(String key) {
+            int index = indices.size() + 1;
+            indices.put(key, index);
+            return index;
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            target.writeShort(indices.size() + 1);
+            bytes.writeTo(target);
+        }
+    }
+}
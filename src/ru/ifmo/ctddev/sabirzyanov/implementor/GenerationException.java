@@ -0,0 +1,21 @@
+package ru.ifmo.ctddev.sabirzyanov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+/**
+ * Carries {@link ImplerException} out of lambdas, such as cache computations and parallel streams.
+ *
+ * @author Ilnar
+ */
+class GenerationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    GenerationException(ImplerException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized ImplerException getCause() {
+        return (ImplerException) super.getCause();
+    }
+}
@@ -3,29 +3,77 @@ package ru.ifmo.ctddev.sabirzyanov.implementor;
 import info.kgeorgiy.java.advanced.implementor.Impler;
 import info.kgeorgiy.java.advanced.implementor.ImplerException;
 import info.kgeorgiy.java.advanced.implementor.JarImpler;
-import org.apache.commons.io.IOUtils;
 
-import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
 import java.io.*;
 import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
+import java.util.jar.JarFile;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 
 /**
  * This class creates implementation of classes, that you provide.
+ * <p>
+ * Several classes may be implemented into one JAR with {@link #implementJar(Collection, Path)},
+ * which compiles them in one compiler task. Compilation runs in memory: neither sources nor
+ * class files are written to disk, class files go straight to the JAR. If the implementor is
+ * created with a cache directory, compiled classes are stored there by hash of their source,
+ * so classes which signatures didn't change are taken from the cache instead of being compiled again.
+ * <p>
+ * Implementor is thread-safe: sources are generated in buffers of the calling threads.
+ * <p>
+ * JARs are written by {@link JarWriter}, so the same classes give the same JAR.
+ * {@link BytecodeImplementor} makes the same JARs without a compiler.
  *
  * @author Ilnar
  */
 public class Implementor implements Impler, JarImpler {
     private static String LS = System.lineSeparator();
     private static String TAB = "    ";
-    private StringBuilder sb = new StringBuilder();
+    /**
+     * Buffer for generated sources of every thread, reused between classes.
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+    /**
+     * Version of the cache layout, changed when cached classes of older versions can't be reused.
+     */
+    private static final int CACHE_FORMAT = 2;
+    private final Path cache;
+    private final JarWriter jarWriter;
+
+    /**
+     * Creates implementor, which compiles every class it puts to JAR.
+     */
+    public Implementor() {
+        this(null);
+    }
+
+    /**
+     * Creates implementor with cache of compiled classes.
+     * @param cache directory for compiled classes, created if needed, or {@code null} for no cache
+     */
+    public Implementor(Path cache) {
+        this(cache, new JarWriter());
+    }
+
+    /**
+     * Creates implementor with cache of compiled classes, which writes JARs with {@code jarWriter}.
+     * @param cache directory for compiled classes, created if needed, or {@code null} for no cache
+     * @param jarWriter writer of JARs, which sets their compression and update mode
+     */
+    public Implementor(Path cache, JarWriter jarWriter) {
+        this.cache = cache;
+        this.jarWriter = jarWriter;
+    }
 
     /**
      *
@@ -34,36 +82,140 @@ public class Implementor implements Impler, JarImpler {
      * If number of the arguments is valid, what means more or equal two,
      * this will command to make implementation of class given as the first argument
      * and whether the argument {@code -jar} is given the implementation will be
-     * archieved to a JAR file
+     * archieved to a JAR file.
+     * <p>
+     * Many classes are implemented into one JAR with {@code -list}, which takes file with
+     * names of the classes, one per line, or with {@code -scan}, which takes all public classes
+     * and interfaces, that may be implemented, from a directory or JAR of class files.
+     * Classes are generated in parallel and compiled together, see {@link #implementJar(Collection, Path)}.
      *
      * @param args arguments from command line
      * @see #implement(Class, Path)
      * @see #implementJar(Class, Path)
      */
     public static void main(String[] args) {
-        if (args == null || args.length < 2) {
+        if (args == null || args.length < 2 || args[0].startsWith("-") && args.length < 3) {
             System.err.println("Not enough arguments! Must be at least 2");
             System.err.println("Usage: \"-jar\" <ClassName> <JarName>");
+            System.err.println("Usage: \"-list\" <ClassNamesFile> <JarName>");
+            System.err.println("Usage: \"-scan\" <ClassPathEntry> <JarName>");
             System.err.println("Usage: <ClassName> <Directory>");
             return;
         }
         Implementor impl = new Implementor();
-        boolean isJar = args[0].equals("-jar");
+        String subject = args[0].startsWith("-") ? args[1] : args[0];
         try {
-            Class<?> c = Class.forName(args[(isJar) ? (1) : (0)]);
-            if (isJar) {
-                impl.implementJar(c, Paths.get(args[2]) );
-            } else {
-                impl.implement(c, Paths.get(args[1]));
+            switch (args[0]) {
+                case "-jar":
+                    impl.implementJar(Class.forName(args[1]), Paths.get(args[2]));
+                    break;
+                case "-list":
+                    impl.implementJar(load(Files.readAllLines(Paths.get(args[1]))), Paths.get(args[2]));
+                    break;
+                case "-scan":
+                    Path entry = Paths.get(args[1]);
+                    try (URLClassLoader loader = new URLClassLoader(new URL[]{entry.toUri().toURL()},
+                            ClassLoader.getSystemClassLoader())) {
+                        List<Class<?>> tokens = scan(entry, loader);
+                        System.err.println("Implementing " + tokens.size() + " classes from " + args[1]);
+                        impl.implementJar(tokens, Paths.get(args[2]));
+                    }
+                    break;
+                default:
+                    impl.implement(Class.forName(args[0]), Paths.get(args[1]));
             }
         } catch (ClassNotFoundException e) {
-            System.err.println("Cannot find class: " + args[(isJar) ? (1) : (0)]);
+            System.err.println("Cannot find class: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Cannot read classes from " + subject + " cause: " + e.getMessage());
         } catch (ImplerException e) {
-            System.err.println("Cannot implement class: " + args[(isJar) ? (1) : (0)] + " cause: " + e.getMessage());
+            System.err.println("Cannot implement class: " + subject + " cause: " + e.getMessage());
         }
 
     }
 
+    /**
+     * Loads classes by names, skipping blank lines and lines starting with {@code #}.
+     * @param names names of classes
+     * @return loaded classes
+     * @throws ClassNotFoundException if some class can't be found
+     */
+    private static List<Class<?>> load(List<String> names) throws ClassNotFoundException {
+        List<Class<?>> tokens = new ArrayList<>();
+        for (String name : names) {
+            name = name.trim();
+            if (!name.isEmpty() && !name.startsWith("#")) {
+                tokens.add(Class.forName(name));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Loads classes from directory or JAR {@code entry} and keeps ones, that may be implemented.
+     * Classes, which can't be loaded, and all but the first of the classes with the same
+     * implementation name are skipped.
+     * @param entry directory or JAR with class files
+     * @param loader class loader of {@code entry}, which should stay open while the classes are implemented
+     * @return classes to implement, sorted by name
+     * @throws IOException if {@code entry} can't be read
+     */
+    private static List<Class<?>> scan(Path entry, ClassLoader loader) throws IOException {
+        List<String> names = new ArrayList<>();
+        if (Files.isDirectory(entry)) {
+            try (Stream<Path> files = Files.walk(entry)) {
+                files.map(file -> entry.relativize(file).toString().replace(File.separatorChar, '/'))
+                        .forEach(names::add);
+            }
+        } else {
+            try (JarFile jar = new JarFile(entry.toFile())) {
+                jar.stream().map(ZipEntry::getName).forEach(names::add);
+            }
+        }
+        Collections.sort(names);
+        Map<String, Class<?>> tokens = new LinkedHashMap<>();
+        for (String name : names) {
+            if (!name.endsWith(".class") || name.endsWith("module-info.class") || name.endsWith("package-info.class")) {
+                continue;
+            }
+            try {
+                Class<?> token = Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+                if (implementable(token)) {
+                    tokens.putIfAbsent(getClassName(token), token);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                System.err.println("Skipping " + name + " cause: " + e);
+            }
+        }
+        return new ArrayList<>(tokens.values());
+    }
+
+    /**
+     * Checks whether {@code token} may be implemented by a public class in its package.
+     */
+    private static boolean implementable(Class<?> token) {
+        for (Class<?> c = token; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers()) || c.isMemberClass() && !Modifier.isStatic(c.getModifiers())) {
+                return false;
+            }
+        }
+        if (token.isAnnotation() || token.isAnonymousClass() || token.isLocalClass()) {
+            return false;
+        }
+        if (token.isInterface()) {
+            return true;
+        }
+        if (!Modifier.isAbstract(token.getModifiers())) {
+            return false;
+        }
+        for (Constructor<?> cons : token.getDeclaredConstructors()) {
+            if (!Modifier.isPrivate(cons.getModifiers())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns default value of class type
      * @param cl class to implement
@@ -99,10 +251,26 @@ public class Implementor implements Impler, JarImpler {
      */
     @Override
     public void implement(Class<?> token, Path root) throws ImplerException {
-        sb.setLength(0);
         if (token == null || root == null) {
             throw new ImplerException("One or more arguments are null");
         }
+        String source = generate(token);
+        try (BufferedWriter out = Files.newBufferedWriter(getFilePath(token, root))) {
+            out.write(source);
+        } catch (IOException e) {
+            throw new ImplerException("Class " + token.getName() + " can't be printed");
+        }
+    }
+
+    /**
+     * Generates source of the {@code token} implementation.
+     * @param token class or interface to implement
+     * @return source of the implementation
+     * @throws ImplerException if {@code token} is final or got no non-private constructors
+     */
+    private String generate(Class<?> token) throws ImplerException {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
         if (Modifier.isFinal(token.getModifiers())) {
             throw new ImplerException("Can't implement final class");
         }
@@ -133,21 +301,18 @@ public class Implementor implements Impler, JarImpler {
         Constructor<?>[] constructors = token.getDeclaredConstructors();
         for (Constructor<?> cons : constructors) {
             if (!Modifier.isPrivate(cons.getModifiers())) {
-                implConstructor(cons, className);
+                implConstructor(sb, cons, className);
                 consCnt++;
             }
         }
         if (consCnt == 0 && constructors.length != 0) {
             throw new ImplerException("No non public constructor");
         }
-        Set<Method> methods = collectAbstractMethods(token);
-        methods.forEach(this::implMethods);
-        sb.append("}").append(LS);
-        try (BufferedWriter out = Files.newBufferedWriter(getFilePath(token, root))) {
-            out.write(sb.toString());
-        } catch (IOException e) {
-            throw new ImplerException("Class " + token.getName() + " can't be printed");
+        for (List<Method> methods : collectAbstractMethods(token)) {
+            implMethods(sb, methods.get(0));
         }
+        sb.append("}").append(LS);
+        return sb.toString();
     }
 
     /**
@@ -157,7 +322,7 @@ public class Implementor implements Impler, JarImpler {
      * @return {@link Path} to the {@code token}
      * @throws IOException if creation of directories was failed.
      */
-    private Path getFilePath(Class token, Path path) throws IOException {
+    private Path getFilePath(Class<?> token, Path path) throws IOException {
         if (token.getPackage() != null) {
             Path p = Paths.get(path.toString(), token.getPackage().getName().replace(".", File.separator));
             Files.createDirectories(p);
@@ -168,23 +333,25 @@ public class Implementor implements Impler, JarImpler {
 
     /**
      * Appends modifier to {@code sb}.
+     * @param sb buffer of the generated source.
      * @param mod {@link Modifier} of instance.
      * @param type {@link} type of instance.
      */
-    private void modifiers(int mod, int type) {
+    private void modifiers(StringBuilder sb, int mod, int type) {
         sb.append(Modifier.toString(mod & ~Modifier.ABSTRACT & type));
     }
 
     /**
      * Append parameters to the {@code sb}.
+     * @param sb buffer of the generated source.
      * @param params parameters list.
      */
-    private void parameters(Parameter[] params) {
+    private void parameters(StringBuilder sb, Parameter[] params) {
         for (int i = 0; i < params.length; i++) {
             if (0 < i) {
                 sb.append(", ");
             }
-            modifiers(params[i].getModifiers(), Modifier.parameterModifiers());
+            modifiers(sb, params[i].getModifiers(), Modifier.parameterModifiers());
             sb
                     .append(" ")
                     .append(params[i].getType().getCanonicalName())
@@ -195,9 +362,10 @@ public class Implementor implements Impler, JarImpler {
 
     /**
      * Appends exceptions to {@code sb}.
+     * @param sb buffer of the generated source.
      * @param excep throwable exceptions list.
      */
-    private void exceptions(Class[] excep) {
+    private void exceptions(StringBuilder sb, Class<?>[] excep) {
         if (excep.length != 0) {
             sb.append(" throws ");
             for (int i = 0; i < excep.length; i++) {
@@ -211,18 +379,19 @@ public class Implementor implements Impler, JarImpler {
 
     /**
      * Implements {@code cons} constructor. Result appended to {@code sb}.
+     * @param sb buffer of the generated source.
      * @param cons constructor to be implemented.
      * @param className name of class, for which constructor is implemented.
      */
-    private void implConstructor(Constructor<?> cons, String className) {
+    private void implConstructor(StringBuilder sb, Constructor<?> cons, String className) {
         sb.append(TAB);
-        modifiers(cons.getModifiers(), Modifier.constructorModifiers());
+        modifiers(sb, cons.getModifiers(), Modifier.constructorModifiers());
         sb.append(" ").append(className).append("(");
         Parameter[] params = cons.getParameters();
-        parameters(params);
+        parameters(sb, params);
         sb
                 .append(")");
-        exceptions(cons.getExceptionTypes());
+        exceptions(sb, cons.getExceptionTypes());
         sb
                 .append(" {")
                 .append(LS)
@@ -248,20 +417,21 @@ public class Implementor implements Impler, JarImpler {
 
     /**
      * Implements {@code method}. Result appended to {@code sb}.
+     * @param sb buffer of the generated source.
      * @param method method to be implemented.
      */
-    private void implMethods(Method method) {
+    private void implMethods(StringBuilder sb, Method method) {
         sb.append(TAB);
-        modifiers(method.getModifiers(), Modifier.methodModifiers());
+        modifiers(sb, method.getModifiers(), Modifier.methodModifiers());
         sb
                 .append(" ")
                 .append(method.getReturnType().getCanonicalName())
                 .append(" ")
                 .append(method.getName())
                 .append("(");
-        parameters(method.getParameters());
+        parameters(sb, method.getParameters());
         sb.append(") ");
-        exceptions(method.getExceptionTypes());
+        exceptions(sb, method.getExceptionTypes());
         sb
                 .append(" {")
                 .append(LS)
@@ -294,122 +464,409 @@ public class Implementor implements Impler, JarImpler {
         if (token == null || jarFile == null) {
             throw new ImplerException("One or more arguments are null");
         }
-        Path path;
+        implementJar(Collections.singletonList(token), jarFile);
+    }
+
+    /**
+     * Provides implementations of several classes archieved in one JAR.
+     * <p>
+     * Generates all implementations in parallel on the common fork-join pool, compiles the ones
+     * missing in the cache in one compiler task and writes all compiled classes to {@code jarFile}.
+     * Class path of the compiler is the class path of this JVM with locations of {@code tokens} added.
+     *
+     * @param tokens classes to implement.
+     * @param jarFile JAR to implement to.
+     * @throws ImplerException if any class can't be implemented, two classes have implementations
+     * with the same name or compilation fails.
+     * @see #implementJar(Class, Path)
+     */
+    public void implementJar(Collection<Class<?>> tokens, Path jarFile) throws ImplerException {
+        if (tokens == null || jarFile == null || tokens.contains(null)) {
+            throw new ImplerException("One or more arguments are null");
+        }
+        checkNames(tokens);
+        List<Unit> units;
         try {
-            path = Files.createTempDirectory("TempRoot");
-        } catch (IOException e) {
-            throw new ImplerException("Couldn't create temp directory");
+            units = tokens.parallelStream().map(this::prepare).collect(Collectors.toList());
+        } catch (GenerationException e) {
+            throw e.getCause();
+        }
+        Map<String, byte[]> classes = new TreeMap<>();
+        Map<String, String> sources = new HashMap<>();
+        Set<Path> classPath = new LinkedHashSet<>();
+        for (Unit unit : units) {
+            if (unit.bytes != null) {
+                classes.put(getClassEntry(unit.token), unit.bytes);
+            } else {
+                sources.put(getClassName(unit.token), unit.source);
+                classPath.add(location(unit.token));
+            }
+        }
+        if (!sources.isEmpty()) {
+            classPath.remove(null);
+            Map<String, byte[]> compiled = MemoryCompiler.compile(sources, classPath);
+            for (Unit unit : units) {
+                if (unit.bytes == null) {
+                    byte[] bytes = compiled.get(getClassName(unit.token));
+                    if (bytes == null) {
+                        throw new ImplerException("Compiler produced no class " + getClassName(unit.token));
+                    }
+                    classes.put(getClassEntry(unit.token), bytes);
+                    if (unit.cached != null) {
+                        store(unit.cached, bytes);
+                    }
+                }
+            }
+        }
+        writeJar(jarWriter, classes, jarFile);
+    }
+
+    /**
+     * Implementation of one class in a batch: its source, cache entry and class file, if it is cached.
+     */
+    private static class Unit {
+        private final Class<?> token;
+        private final String source;
+        private final Path cached;
+        private final byte[] bytes;
+
+        private Unit(Class<?> token, String source, Path cached, byte[] bytes) {
+            this.token = token;
+            this.source = source;
+            this.cached = cached;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Generates implementation of {@code token} and looks it up in the cache. Called from
+     * worker threads, so failures are wrapped in {@link GenerationException}.
+     * @param token class to implement
+     * @return generated implementation
+     */
+    private Unit prepare(Class<?> token) {
+        try {
+            String source = generate(token);
+            Path cachedClass = cache == null ? null : cache.resolve(hash(source) + ".class");
+            if (cachedClass != null && Files.isRegularFile(cachedClass)) {
+                return new Unit(token, source, cachedClass, read(cachedClass));
+            }
+            return new Unit(token, source, cachedClass, null);
+        } catch (ImplerException e) {
+            throw new GenerationException(e);
         }
-        implement(token, path);
-        String className = File.separator + token.getSimpleName() + "Impl";
+    }
+
+    /**
+     * Returns directory or JAR the {@code token} was loaded from.
+     * @param token loaded class
+     * @return location of the class, or {@code null} if it is unknown
+     */
+    private static Path location(Class<?> token) {
+        try {
+            CodeSource source = token.getProtectionDomain().getCodeSource();
+            return source == null || source.getLocation() == null ? null : Paths.get(source.getLocation().toURI());
+        } catch (SecurityException | URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns full name of the {@code token} implementation.
+     * @param token implemented class
+     * @return binary name of the implementation
+     */
+    static String getClassName(Class<?> token) {
+        String className = token.getSimpleName() + "Impl";
         if (token.getPackage() != null) {
-            className = token.getPackage().getName().replace(".", File.separator) + className;
-        }
-        int exitCode = compile(path, path + File.separator + className + ".java");
-        if (exitCode != 0) {
-            throw new ImplerException("Compilation error");
-        }
-        Manifest manifest = new Manifest();
-        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
-        try (FileInputStream fileInputStream = new FileInputStream(path + File.separator + className + ".class");
-             JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jarFile.toFile()), manifest)
-        ) {
-            jarOutputStream.putNextEntry(new ZipEntry(className + ".class"));
-//            IOUtils.copy(fileInputStream, jarOutputStream);
-            byte buffer[] = new byte[1024];
-            int read;
-            while ((read = fileInputStream.read(buffer)) > 0) {
-                jarOutputStream.write(buffer, 0, read);
+            className = token.getPackage().getName() + "." + className;
+        }
+        return className;
+    }
+
+    /**
+     * Checks that implementations of different {@code tokens} have different names, as nested
+     * classes with the same simple name in one package would get the same implementation.
+     * @param tokens implemented classes
+     * @throws ImplerException if two different classes have implementations with the same name
+     */
+    static void checkNames(Collection<Class<?>> tokens) throws ImplerException {
+        Map<String, Class<?>> names = new HashMap<>();
+        for (Class<?> token : tokens) {
+            Class<?> other = names.putIfAbsent(getClassName(token), token);
+            if (other != null && other != token) {
+                throw new ImplerException("Classes " + other.getName() + " and " + token.getName()
+                        + " have the same implementation " + getClassName(token));
+            }
+        }
+    }
+
+    /**
+     * Returns name of the JAR entry with compiled implementation of {@code token}.
+     * @param token implemented class
+     * @return path of the class file, separated by {@code /}
+     */
+    static String getClassEntry(Class<?> token) {
+        return getClassName(token).replace('.', '/') + ".class";
+    }
+
+    /**
+     * Returns hex SHA-256 hash of the {@code source}, cache format and compiler, which is the key
+     * of its class in cache. Classes compiled by another compiler or with other options aren't reused.
+     * @param source source of a class
+     * @return hash of the source
+     */
+    private String hash(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((CACHE_FORMAT + "\n" + MemoryCompiler.fingerprint() + "\n").getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(source.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
             }
-            jarOutputStream.closeEntry();
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is not supported", e);
+        }
+    }
+
+    private byte[] read(Path file) throws ImplerException {
+        try {
+            return Files.readAllBytes(file);
         } catch (IOException e) {
-            throw new ImplerException("Couldn't make jar file cause " + e.getMessage());
+            throw new ImplerException("Couldn't read class file " + file + " cause " + e.getMessage());
         }
     }
 
     /**
-     * Provides basic usage of Java compiler.
-     * <p>
-     * Requests an system Java compiler and passes {@code file} to it.
-     * After that returns result of compilation.
-     *
-     * @param path to source
-     * @param file name of class to compile
-     * @return exitcode of compiler
+     * Stores compiled class in cache. The class is written to a temporary file first,
+     * so concurrent builds never see a partial class.
+     * @param file cache entry
+     * @param bytes compiled class
+     * @throws ImplerException if the class can't be written
      */
-    private int compile(Path path, String file) {
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        List<String> args = new ArrayList<>();
-        args.add(file);
-        args.add("-cp");
-        args.add(path + File.pathSeparator + System.getProperty("java.class.path"));
-        return compiler.run(null, System.err, System.err, args.toArray(new String[args.size()]));
+    private void store(Path file, byte[] bytes) throws ImplerException {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "class", ".tmp");
+            try {
+                Files.write(temp, bytes);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new ImplerException("Couldn't cache class file " + file + " cause " + e.getMessage());
+        }
     }
 
+    /**
+     * Writes JAR with manifest and given {@code classes}.
+     * @param writer writer of the JAR
+     * @param classes class files by their entry names
+     * @param jarFile JAR to write to
+     * @throws ImplerException if JAR can't be written
+     */
+    static void writeJar(JarWriter writer, Map<String, byte[]> classes, Path jarFile) throws ImplerException {
+        try {
+            writer.write(classes, jarFile);
+        } catch (IOException e) {
+            throw new ImplerException("Couldn't make jar file cause " + e.getMessage());
+        }
+    }
 
     /**
-     * Helper class for collecting methods by own hash.
+     * Key of a method, which is its name and erased parameter types. Methods with equal
+     * signatures override each other, whatever their return types are.
      */
-    private class MethodHashed {
-        public final Method m;
+    private static class Signature {
+        private final String name;
+        private final Class<?>[] params;
 
-        private MethodHashed(Method m) {
-            this.m = m;
+        private Signature(Method m) {
+            this.name = m.getName();
+            this.params = m.getParameterTypes();
         }
 
         @Override
         public boolean equals(Object obj) {
-            if (!(obj instanceof MethodHashed)) {
+            if (!(obj instanceof Signature)) {
                 return false;
             }
-            Method m2 = ((MethodHashed) obj).m;
-
-            return m.getName().equals(m2.getName()) && Arrays.equals(m.getParameterTypes(), m2.getParameterTypes());
+            Signature other = (Signature) obj;
+            return name.equals(other.name) && Arrays.equals(params, other.params);
         }
 
         @Override
         public int hashCode() {
-            int hash = m.getName().hashCode();
-            for (Parameter p : m.getParameters()) {
-                hash ^= p.getType().hashCode();
+            return 31 * name.hashCode() + Arrays.hashCode(params);
+        }
+    }
+
+    /**
+     * Non-private instance methods of a class or interface, including inherited ones, by signature.
+     * Every value is either one concrete method, or abstract methods with this signature which
+     * differ by return type, the most specific first.
+     */
+    private static final ClassValue<Map<Signature, List<Method>>> METHODS = new ClassValue<Map<Signature, List<Method>>>() {
+        @Override
+        protected Map<Signature, List<Method>> computeValue(Class<?> type) {
+            return index(type);
+        }
+    };
+
+    /**
+     * Abstract methods of a class or interface to implement, as returned by {@link #collectAbstractMethods(Class)}.
+     */
+    private static final ClassValue<List<List<Method>>> ABSTRACT_METHODS = new ClassValue<List<List<Method>>>() {
+        @Override
+        protected List<List<Method>> computeValue(Class<?> type) {
+            Map<Signature, List<Method>> methods = METHODS.get(type);
+            if (type.isInterface()) {
+                methods = new HashMap<>(methods);
+                inherit(methods, METHODS.get(Object.class), true);
+            }
+            List<List<Method>> result = new ArrayList<>();
+            for (List<Method> group : methods.values()) {
+                if (Modifier.isAbstract(group.get(0).getModifiers())) {
+                    result.add(group);
+                }
+            }
+            result.sort(Comparator.comparing((List<Method> group) -> group.get(0).getName())
+                    .thenComparing(group -> Arrays.toString(group.get(0).getParameterTypes())));
+            return Collections.unmodifiableList(result);
+        }
+    };
+
+    /**
+     * Builds method index of {@code type} from the indices of its direct supertypes. Methods of
+     * the superclass override methods of interfaces, methods declared in {@code type} override both.
+     * Bridge methods implement abstract methods with their erased signature and return type.
+     */
+    private static Map<Signature, List<Method>> index(Class<?> type) {
+        Map<Signature, List<Method>> methods = new HashMap<>();
+        for (Class<?> parent : type.getInterfaces()) {
+            inherit(methods, METHODS.get(parent), false);
+        }
+        if (type.getSuperclass() != null) {
+            inherit(methods, METHODS.get(type.getSuperclass()), true);
+        }
+        List<Method> bridges = new ArrayList<>();
+        for (Method m : type.getDeclaredMethods()) {
+            int mod = m.getModifiers();
+            if (Modifier.isPrivate(mod) || Modifier.isStatic(mod)) {
+                continue;
+            }
+            if (m.isBridge()) {
+                bridges.add(m);
+            } else if (Modifier.isAbstract(mod)) {
+                List<Method> inherited = methods.get(new Signature(m));
+                methods.put(new Signature(m), combine(Collections.singletonList(m),
+                        inherited == null ? Collections.emptyList() : abstractOnly(inherited)));
+            } else {
+                methods.put(new Signature(m), Collections.singletonList(m));
+            }
+        }
+        for (Method bridge : bridges) {
+            List<Method> group = methods.get(new Signature(bridge));
+            if (group == null) {
+                methods.put(new Signature(bridge), Collections.singletonList(bridge));
+            } else if (Modifier.isAbstract(group.get(0).getModifiers())) {
+                List<Method> left = new ArrayList<>(group);
+                left.removeIf(m -> m.getReturnType() == bridge.getReturnType());
+                methods.put(new Signature(bridge), left.isEmpty() ? Collections.singletonList(bridge) : left);
             }
-            return hash;
         }
+        return methods;
     }
 
     /**
-     *
-     * Method to walk all ancestors of the class
-     * <p>
-     * This method will walk to very beginning of {@code clazz} inheritance hierarchy and
-     * fill up dictionary with method, which are abstract and non-private.
-     *
-     * @param clazz target class
-     * @return {@link Set} of methods.
+     * Adds methods of a direct supertype to the {@code methods} collected so far.
+     * @param methods methods collected from other supertypes
+     * @param parent index of the supertype
+     * @param superclass whether the supertype is the superclass, which methods take precedence
+     */
+    private static void inherit(Map<Signature, List<Method>> methods, Map<Signature, List<Method>> parent,
+                                boolean superclass) {
+        for (Map.Entry<Signature, List<Method>> entry : parent.entrySet()) {
+            List<Method> current = methods.get(entry.getKey());
+            List<Method> inherited = entry.getValue();
+            if (current == null) {
+                methods.put(entry.getKey(), inherited);
+                continue;
+            }
+            Method c = current.get(0);
+            Method i = inherited.get(0);
+            boolean concreteC = !Modifier.isAbstract(c.getModifiers());
+            boolean concreteI = !Modifier.isAbstract(i.getModifiers());
+            List<Method> result;
+            if (superclass) {
+                result = concreteI ? inherited : combine(inherited, abstractOnly(current));
+            } else if (concreteC && concreteI) {
+                result = current;
+            } else if (concreteC) {
+                result = overrides(c, i) ? current : inherited;
+            } else if (concreteI) {
+                result = overrides(i, c) ? inherited : current;
+            } else {
+                result = combine(current, inherited);
+            }
+            methods.put(entry.getKey(), result);
+        }
+    }
+
+    /**
+     * Checks whether default method {@code m} is declared in a subinterface of the declaring interface of {@code other}.
+     */
+    private static boolean overrides(Method m, Method other) {
+        return other.getDeclaringClass().isAssignableFrom(m.getDeclaringClass());
+    }
+
+    private static List<Method> abstractOnly(List<Method> group) {
+        return Modifier.isAbstract(group.get(0).getModifiers()) ? group : Collections.emptyList();
+    }
+
+    /**
+     * Merges groups of abstract methods with one signature, keeping one method for every return type
+     * and putting first the method, which return type is assignable to all the others.
      */
-    private Set<Method> collectAbstractMethods(Class<?> clazz) {
-        Set<MethodHashed> abstractMethods = new HashSet<>();
-        if (clazz == null || !Modifier.isAbstract(clazz.getModifiers())) {
-            return Collections.emptySet();
+    private static List<Method> combine(List<Method> a, List<Method> b) {
+        if (b.isEmpty()) {
+            return a;
         }
-        for (Method m : clazz.getMethods()) {
-            if (Modifier.isAbstract(m.getModifiers())) {
-                abstractMethods.add(new MethodHashed(m));
+        List<Method> result = new ArrayList<>(a);
+        for (Method m : b) {
+            if (result.stream().noneMatch(r -> r.getReturnType() == m.getReturnType())) {
+                result.add(m);
             }
         }
-        while (clazz != null) {
-            if (!Modifier.isAbstract(clazz.getModifiers())) {
+        for (int i = 0; i < result.size(); i++) {
+            Class<?> type = result.get(i).getReturnType();
+            if (result.stream().allMatch(r -> r.getReturnType().isAssignableFrom(type))) {
+                Collections.swap(result, 0, i);
                 break;
             }
-            for (Method m : clazz.getDeclaredMethods()) {
-                int mod = m.getModifiers();
-                if (!Modifier.isPrivate(mod) && !Modifier.isPublic(mod)) {
-                    abstractMethods.add(new MethodHashed(m));
-                }
-            }
-            clazz = clazz.getSuperclass();
         }
-        abstractMethods.removeIf(method -> !Modifier.isAbstract(method.m.getModifiers()));
-        return abstractMethods.stream().map(box -> box.m).collect(Collectors.toSet());
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     *
+     * Method to collect abstract methods of a class or interface
+     * <p>
+     * Every class is indexed once, from the memoized indices of its direct supertypes, so repeated
+     * calls and classes with common ancestors share the work. The result is memoized as well
+     * and may be used from several threads.
+     *
+     * @param clazz target class
+     * @return abstract methods to implement, grouped by signature and sorted by name and parameters.
+     * The first method of a group has the most specific return type, the others differ only by return
+     * type and need bridge methods.
+     */
+    static List<List<Method>> collectAbstractMethods(Class<?> clazz) {
+        if (clazz == null || !Modifier.isAbstract(clazz.getModifiers()) || clazz.isPrimitive() || clazz.isArray()) {
+            return Collections.emptyList();
+        }
+        return ABSTRACT_METHODS.get(clazz);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,148 @@
+package ru.ifmo.ctddev.sabirzyanov.implementor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes reproducible JARs: the same entries always give the same bytes.
+ * <p>
+ * The manifest goes first and the other entries follow sorted by name. Every entry gets the same
+ * timestamp and no extra fields, and the manifest has fixed content unless an entry for it is given.
+ * Entries are deflated with the given compression level, or stored uncompressed at level
+ * {@link Deflater#NO_COMPRESSION}, which is the fastest to write and to read.
+ * <p>
+ * In update mode entries of an existing JAR are kept unless they are given again. If all the given
+ * entries are already in the JAR with the same content, the JAR isn't touched at all, so its
+ * modification time doesn't change. Otherwise the JAR is written anew, as ZIP files can't be
+ * changed in place. JARs are written to a temporary file, which replaces the target atomically.
+ *
+ * @author Ilnar
+ */
+public class JarWriter {
+    private static final byte[] MANIFEST = "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+    /**
+     * Time of all entries, 1980-02-01 00:00 as seen by ZIP readers in any time zone.
+     */
+    private static final LocalDateTime TIME = LocalDateTime.of(1980, 2, 1, 0, 0);
+
+    private final int level;
+    private final boolean update;
+
+    /**
+     * Creates writer, which replaces JARs and deflates entries with default compression level.
+     */
+    public JarWriter() {
+        this(Deflater.DEFAULT_COMPRESSION, false);
+    }
+
+    /**
+     * Creates writer with given compression.
+     * @param level compression level from {@link Deflater#NO_COMPRESSION}, which stores entries,
+     *              to {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param update whether existing JARs should be updated instead of replaced
+     */
+    public JarWriter(int level, boolean update) {
+        if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+                && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.level = level;
+        this.update = update;
+    }
+
+    /**
+     * Writes JAR with given {@code entries}, or updates it in update mode.
+     * @param entries contents of entries by their names, separated by {@code /}
+     * @param jarFile JAR to write to
+     * @return {@code false} if the JAR already had the same entries and wasn't written
+     * @throws IOException if existing JAR can't be read or the new one can't be written
+     */
+    public boolean write(Map<String, byte[]> entries, Path jarFile) throws IOException {
+        Map<String, byte[]> result = new TreeMap<>();
+        if (update && Files.isRegularFile(jarFile)) {
+            read(jarFile, result);
+            boolean changed = false;
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                changed |= !Arrays.equals(result.get(entry.getKey()), entry.getValue());
+            }
+            if (!changed) {
+                return false;
+            }
+        }
+        result.putAll(entries);
+        byte[] manifest = result.remove(JarFile.MANIFEST_NAME);
+        Path dir = jarFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, jarFile.getFileName().toString(), ".tmp");
+        try {
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(temp))) {
+                out.setLevel(level);
+                put(out, JarFile.MANIFEST_NAME, manifest == null ? MANIFEST : manifest);
+                for (Map.Entry<String, byte[]> entry : result.entrySet()) {
+                    put(out, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(temp, jarFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * Writes one entry. Stored entries need their size and checksum before the data.
+     */
+    private void put(ZipOutputStream out, String name, byte[] bytes) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(TIME.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        if (level == Deflater.NO_COMPRESSION) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    /**
+     * Reads all file entries of {@code jarFile} to {@code entries}.
+     */
+    private static void read(Path jarFile, Map<String, byte[]> entries) throws IOException {
+        try (ZipFile zip = new ZipFile(jarFile.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (!entry.isDirectory()) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        entries.put(entry.getName(), readAll(in));
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+}
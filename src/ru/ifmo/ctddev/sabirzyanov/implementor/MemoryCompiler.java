@@ -0,0 +1,165 @@
+package ru.ifmo.ctddev.sabirzyanov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Compiles sources held in memory to class files held in memory.
+ * <p>
+ * Sources are given to the compiler as strings and class files are collected in byte arrays
+ * by a forwarding file manager, so compilation doesn't touch the file system except for
+ * reading the class path.
+ *
+ * @author Ilnar
+ */
+class MemoryCompiler {
+    /**
+     * Release of compiled classes, so they load on any JVM since Java 8 whichever JDK compiled them.
+     */
+    private static final String RELEASE = "8";
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+    /**
+     * Compiler options except the class path. Compilers before Java 9 don't know {@code --release}.
+     */
+    private static final List<String> OPTIONS = COMPILER != null && COMPILER.isSupportedOption("--release") >= 0
+            ? Arrays.asList("-encoding", "UTF-8", "--release", RELEASE)
+            : Arrays.asList("-encoding", "UTF-8", "-source", "1." + RELEASE, "-target", "1." + RELEASE);
+
+    private MemoryCompiler() {
+    }
+
+    /**
+     * Returns description of the compiler and its options. The same source compiled by compilers
+     * with the same description gives the same class.
+     * @return version of the compiler and its options
+     */
+    static String fingerprint() {
+        return System.getProperty("java.vendor") + " " + System.getProperty("java.version") + " " + OPTIONS;
+    }
+
+    /**
+     * Compiles {@code sources} in one compiler task against the class path of this JVM
+     * to classes of release {@value #RELEASE}.
+     * @param sources sources by binary names of their classes
+     * @param classPath additional class path entries
+     * @return class files by binary names of their classes, including nested ones
+     * @throws ImplerException if there is no Java compiler or compilation fails
+     */
+    static Map<String, byte[]> compile(Map<String, String> sources, Collection<Path> classPath) throws ImplerException {
+        JavaCompiler compiler = COMPILER;
+        if (compiler == null) {
+            throw new ImplerException("Java compiler is not available");
+        }
+        List<JavaFileObject> units = new ArrayList<>();
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            units.add(new Source(entry.getKey(), entry.getValue()));
+        }
+        StringBuilder cp = new StringBuilder(System.getProperty("java.class.path"));
+        for (Path entry : classPath) {
+            cp.append(File.pathSeparator).append(entry);
+        }
+        List<String> args = new ArrayList<>(OPTIONS);
+        args.add("-cp");
+        args.add(cp.toString());
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ClassFile> classes = new TreeMap<>();
+        try (JavaFileManager fileManager = new MemoryFileManager(
+                compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8), classes)) {
+            if (!compiler.getTask(null, fileManager, diagnostics, args, null, units).call()) {
+                throw new ImplerException("Compilation error" + describe(diagnostics.getDiagnostics()));
+            }
+        } catch (IOException e) {
+            throw new ImplerException("Couldn't compile classes cause " + e.getMessage());
+        }
+        Map<String, byte[]> result = new TreeMap<>();
+        for (Map.Entry<String, ClassFile> entry : classes.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().bytes.toByteArray());
+        }
+        return result;
+    }
+
+    private static String describe(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        StringBuilder message = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                message.append(System.lineSeparator());
+                if (diagnostic.getSource() != null) {
+                    message.append(diagnostic.getSource().getName()).append(":")
+                            .append(diagnostic.getLineNumber()).append(": ");
+                }
+                message.append(diagnostic.getMessage(Locale.ROOT));
+            }
+        }
+        return message.toString();
+    }
+
+    private static URI uri(String className, JavaFileObject.Kind kind) {
+        return URI.create("mem:///" + className.replace('.', '/') + kind.extension);
+    }
+
+    /**
+     * Source file with the given content.
+     */
+    private static class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String className, String code) {
+            super(uri(className, Kind.SOURCE), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * Class file written to a byte array.
+     */
+    private static class ClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFile(String className) {
+            super(uri(className, Kind.CLASS), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            bytes.reset();
+            return bytes;
+        }
+    }
+
+    /**
+     * File manager that reads the class path as usual and keeps compiled classes in memory.
+     */
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, ClassFile> classes;
+
+        MemoryFileManager(StandardJavaFileManager fileManager, Map<String, ClassFile> classes) {
+            super(fileManager);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) throws IOException {
+            if (kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            ClassFile file = new ClassFile(className);
+            classes.put(className, file);
+            return file;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ru.ifmo.ctddev.sabirzyanov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Makes implementations of classes and interfaces at runtime, without files and compiler.
+ * <p>
+ * Class files made by {@link BytecodeImplementor} are defined in a class loader created for each
+ * class loader of implemented tokens, and the implementation of every token is generated once
+ * and cached. The factory is thread-safe and keeps its implementations, their loaders and tokens
+ * reachable, so they may be unloaded only together with the factory.
+ * <p>
+ * Implementations live in their own runtime packages, so tokens, their constructors used by
+ * implementations and their abstract methods should be public or protected. Implementations
+ * of tokens from {@code java.*} packages get {@code stub.} prefix to their names.
+ *
+ * @author Ilnar
+ */
+public class StubFactory {
+    private final BytecodeImplementor implementor = new BytecodeImplementor();
+    private final ConcurrentMap<ClassLoader, StubClassLoader> loaders = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Class<?>> stubs = new ConcurrentHashMap<>();
+
+    /**
+     * Returns implementation of {@code token}, generating it on the first request.
+     * @param token class or interface to implement
+     * @param <T> type of token
+     * @return implementation class
+     * @throws ImplerException if {@code token} can't be implemented in a separate class loader
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Class<? extends T> getStubClass(Class<T> token) throws ImplerException {
+        if (token == null) {
+            throw new ImplerException("Token is null");
+        }
+        Class<?> stub = stubs.get(token);
+        if (stub != null) {
+            return (Class<? extends T>) stub;
+        }
+        try {
+            return (Class<? extends T>) stubs.computeIfAbsent(token, this::define);
+        } catch (GenerationException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns new instance of the {@code token} implementation. The instance is made by the public
+     * or protected implementation constructor with the fewest parameters, given default values.
+     * @param token class or interface to implement
+     * @param <T> type of token
+     * @return new instance
+     * @throws ImplerException if {@code token} can't be implemented or the constructor fails
+     */
+    public <T> T newInstance(Class<T> token) throws ImplerException {
+        Class<? extends T> stub = getStubClass(token);
+        Constructor<?> constructor = null;
+        for (Constructor<?> cons : stub.getDeclaredConstructors()) {
+            boolean accessible = (cons.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED)) != 0;
+            if (accessible && (constructor == null || cons.getParameterCount() < constructor.getParameterCount())) {
+                constructor = cons;
+            }
+        }
+        if (constructor == null) {
+            throw new ImplerException("No public or protected constructor in " + stub.getName());
+        }
+        Class<?>[] types = constructor.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = defaultValue(types[i]);
+        }
+        try {
+            constructor.setAccessible(true);
+            return token.cast(constructor.newInstance(args));
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new ImplerException("Can't instantiate " + stub.getName(), e);
+        } catch (InvocationTargetException e) {
+            throw new ImplerException("Constructor of " + token.getName() + " failed", e.getCause());
+        }
+    }
+
+    private Class<?> define(Class<?> token) {
+        try {
+            checkAccess(token);
+            ClassLoader parent = token.getClassLoader() == null
+                    ? ClassLoader.getSystemClassLoader()
+                    : token.getClassLoader();
+            String name = Implementor.getClassName(token);
+            if (name.startsWith("java.")) {
+                name = "stub." + name;
+            }
+            byte[] bytes = implementor.generate(token, name);
+            return loaders.computeIfAbsent(parent, StubClassLoader::new).define(name, bytes);
+        } catch (ImplerException e) {
+            throw new GenerationException(e);
+        } catch (LinkageError e) {
+            throw new GenerationException(new ImplerException("Can't define implementation of " + token.getName(), e));
+        }
+    }
+
+    /**
+     * Checks that implementation in another runtime package can extend {@code token}.
+     */
+    private void checkAccess(Class<?> token) throws ImplerException {
+        if (!Modifier.isPublic(token.getModifiers())) {
+            throw new ImplerException(token.getName() + " is not public");
+        }
+        if (!token.isInterface()) {
+            boolean accessible = false;
+            for (Constructor<?> cons : token.getDeclaredConstructors()) {
+                accessible |= (cons.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED)) != 0;
+            }
+            if (!accessible) {
+                throw new ImplerException(token.getName() + " has no public or protected constructors");
+            }
+        }
+        for (List<Method> methods : Implementor.collectAbstractMethods(token)) {
+            for (Method method : methods) {
+                if ((method.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED)) == 0) {
+                    throw new ImplerException("Package-private abstract method " + method);
+                }
+            }
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        return 0;
+    }
+
+    /**
+     * Class loader for implementations of tokens from one class loader.
+     */
+    private static class StubClassLoader extends ClassLoader {
+        static {
+            registerAsParallelCapable();
+        }
+
+        StubClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
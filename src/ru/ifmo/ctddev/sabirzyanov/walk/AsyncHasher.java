@@ -0,0 +1,213 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Hashes files with {@link AsynchronousFileChannel}, keeping many reads in flight at once.
+ * <p>
+ * Meant for high-latency file systems like NFS, where a blocking reader spends most of
+ * its time waiting. Reads go to a fixed pool of {@link #CHUNK}-sized buffers, which bounds
+ * the number of outstanding bytes. Every file holds at least one buffer, so {@link #hash(Path)}
+ * blocks while the pool is empty. Large files also take up to {@link #READ_AHEAD} buffers
+ * that are free at the moment, so their reads overlap too. Chunks are fed to the
+ * file's hasher in order.
+ * <p>
+ * Completion handlers run on a cached thread pool. Where the JDK emulates asynchronous file
+ * I/O with threads (Linux, macOS), every outstanding read occupies a thread, so the pool
+ * grows up to the number of buffers. With native asynchronous I/O (Windows) it stays small.
+ * <p>
+ * The first {@code size} bytes of a file are hashed, where {@code size} is the size
+ * when the file was opened. A file that shrinks while it is read is treated as unreadable.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class AsyncHasher implements AutoCloseable {
+    static final int CHUNK = 256 << 10;
+    static final int READ_AHEAD = 8;
+
+    private final HashAlgorithm algorithm;
+    private final ExecutorService executor;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final Set<StandardOpenOption> options = Collections.singleton(StandardOpenOption.READ);
+    private final WalkMetrics metrics = WalkMetrics.get();
+
+    /**
+     * Creates hasher.
+     * @param algorithm hash function
+     * @param budget maximal number of bytes being read at once
+     */
+    public AsyncHasher(HashAlgorithm algorithm, long budget) {
+        this.algorithm = algorithm;
+        this.executor = Executors.newCachedThreadPool();
+        int count = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budget / CHUNK));
+        this.buffers = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            buffers.add(ByteBuffer.allocateDirect(CHUNK));
+        }
+    }
+
+    /**
+     * Returns maximal number of files being read at once.
+     * @return number of read buffers
+     */
+    public int capacity() {
+        return buffers.remainingCapacity() + buffers.size();
+    }
+
+    /**
+     * Starts hashing of the {@code file}. Blocks while all read buffers are in use.
+     * @param file file to hash
+     * @return future hex hash, or future {@code null} if file can't be read
+     * @throws InterruptedException if interrupted while waiting for a buffer
+     */
+    public CompletableFuture<String> hash(Path file) throws InterruptedException {
+        ByteBuffer buffer = buffers.take();
+        FileTask task = new FileTask();
+        long start = System.nanoTime();
+        try {
+            task.channel = AsynchronousFileChannel.open(file, options, executor);
+            metrics.open.since(start);
+            task.size = task.channel.size();
+        } catch (IOException | UnsupportedOperationException e) {
+            metrics.error(e);
+            if (task.channel != null) {
+                try {
+                    task.channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+            task.buffers.add(buffer);
+            task.fail();
+            return task.future;
+        }
+        task.start(buffer);
+        return task.future;
+    }
+
+    /**
+     * Stops completion threads. Hashes still being computed are never completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private class FileTask implements CompletionHandler<Integer, ByteBuffer> {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private final FileHasher hasher = algorithm.create();
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final Map<Long, ByteBuffer> completed = new HashMap<>();
+        private final Map<ByteBuffer, Long> positions = new IdentityHashMap<>();
+        private final Map<ByteBuffer, Long> started = new IdentityHashMap<>();
+        private AsynchronousFileChannel channel;
+        private long size;
+        private long issued;
+        private long fed;
+        private int inFlight;
+        private boolean failed;
+        private boolean done;
+
+        synchronized void start(ByteBuffer first) {
+            buffers.add(first);
+            for (long extra = size - CHUNK; extra > 0 && buffers.size() < READ_AHEAD; extra -= CHUNK) {
+                ByteBuffer buffer = AsyncHasher.this.buffers.poll();
+                if (buffer == null) {
+                    break;
+                }
+                buffers.add(buffer);
+            }
+            for (ByteBuffer buffer : buffers) {
+                issue(buffer);
+            }
+            finishIfDone();
+        }
+
+        private void issue(ByteBuffer buffer) {
+            if (issued >= size || failed) {
+                return;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(CHUNK, size - issued));
+            positions.put(buffer, issued);
+            issued += buffer.limit();
+            read(buffer);
+        }
+
+        private void read(ByteBuffer buffer) {
+            inFlight++;
+            started.put(buffer, System.nanoTime());
+            try {
+                channel.read(buffer, positions.get(buffer) + buffer.position(), buffer, this);
+            } catch (RuntimeException e) {
+                inFlight--;
+                started.remove(buffer);
+                metrics.error(e);
+                failed = true;
+            }
+        }
+
+        @Override
+        public synchronized void completed(Integer read, ByteBuffer buffer) {
+            inFlight--;
+            metrics.read.since(started.remove(buffer));
+            if (read < 0) {
+                metrics.error("EOFException");
+                failed = true;
+            } else if (buffer.hasRemaining() && !failed) {
+                read(buffer);
+                return;
+            } else {
+                completed.put(positions.remove(buffer), buffer);
+                ByteBuffer next;
+                while (!failed && (next = completed.remove(fed)) != null) {
+                    next.flip();
+                    fed += next.remaining();
+                    long start = System.nanoTime();
+                    hasher.update(next);
+                    metrics.digest.since(start);
+                    issue(next);
+                }
+            }
+            finishIfDone();
+        }
+
+        @Override
+        public synchronized void failed(Throwable exc, ByteBuffer buffer) {
+            inFlight--;
+            started.remove(buffer);
+            metrics.error(exc);
+            failed = true;
+            finishIfDone();
+        }
+
+        private void finishIfDone() {
+            if (done || inFlight > 0 || (!failed && fed < size)) {
+                return;
+            }
+            done = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            if (failed) {
+                fail();
+            } else {
+                AsyncHasher.this.buffers.addAll(buffers);
+                metrics.file(size);
+                future.complete(HashWriter.toHex(hasher.digest()));
+            }
+        }
+
+        void fail() {
+            AsyncHasher.this.buffers.addAll(buffers);
+            future.complete(null);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of a walk over an input list, which lets an interrupted run resume.
+ * <p>
+ * A checkpoint holds the number of input lines whose roots are fully written and the length
+ * of the output at that moment. A resumed run truncates the output to that length, skips
+ * that many input lines and continues. Roots are the unit of progress, so a root being
+ * walked at the time of a crash is walked again; with {@code -cache} its already hashed
+ * files are not read twice.
+ * <p>
+ * The output is synced before the checkpoint is saved, and the checkpoint is replaced
+ * atomically, so it never points past data that reached the disk. The checkpoint is deleted
+ * when the walk finishes.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class Checkpoint {
+    private static final String MAGIC = "walk-checkpoint";
+
+    private final Path file;
+    private final long period;
+    private final String shard;
+    private long lines;
+    private long length;
+    private long saved;
+
+    /**
+     * Loads checkpoint from {@code file}, or starts from scratch if it doesn't exist.
+     * @param file checkpoint file
+     * @param period minimal interval between saves, in milliseconds
+     * @param shard description of the processed part of input, see {@link Shard#toString()}
+     * @throws IOException if checkpoint can't be read or belongs to another shard
+     */
+    public Checkpoint(Path file, long period, Shard shard) throws IOException {
+        this.file = file;
+        this.period = TimeUnit.MILLISECONDS.toNanos(period);
+        this.shard = shard.toString();
+        this.saved = System.nanoTime();
+        if (Files.exists(file)) {
+            List<String> fields = Files.readAllLines(file, StandardCharsets.UTF_8);
+            try {
+                if (fields.size() != 4 || !MAGIC.equals(fields.get(0))) {
+                    throw new IOException("Invalid checkpoint " + file);
+                }
+                if (!this.shard.equals(fields.get(1))) {
+                    throw new IOException("Checkpoint " + file + " is for shard " + fields.get(1));
+                }
+                lines = Long.parseLong(fields.get(2));
+                length = Long.parseLong(fields.get(3));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid checkpoint " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns number of input lines processed before the checkpoint.
+     * @return number of lines to skip
+     */
+    public long lines() {
+        return lines;
+    }
+
+    /**
+     * Returns length of the output at the checkpoint.
+     * @return number of output bytes to keep
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Records that the first {@code lines} input lines are processed. Saves checkpoint
+     * if the period has passed since the last save.
+     * @param lines number of processed input lines
+     * @param out output of the walk
+     * @throws IOException if output or checkpoint can't be written
+     */
+    public void update(long lines, HashWriter out) throws IOException {
+        if (System.nanoTime() - saved >= period) {
+            save(lines, out);
+        }
+    }
+
+    /**
+     * Syncs output and saves checkpoint.
+     * @param lines number of processed input lines
+     * @param out output of the walk
+     * @throws IOException if output or checkpoint can't be written
+     */
+    public void save(long lines, HashWriter out) throws IOException {
+        out.sync();
+        this.lines = lines;
+        this.length = out.length();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        byte[] bytes = String.join("\n", MAGIC, shard, Long.toString(lines), Long.toString(length))
+                .getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(bytes));
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        saved = System.nanoTime();
+    }
+
+    /**
+     * Deletes checkpoint of a finished walk, so the next run starts from scratch.
+     * @throws IOException if checkpoint can't be deleted
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
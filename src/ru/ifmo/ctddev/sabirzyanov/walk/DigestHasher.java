@@ -0,0 +1,57 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@link FileHasher} backed by a {@link MessageDigest}.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+class DigestHasher implements FileHasher {
+    private final MessageDigest md;
+
+    DigestHasher(String algorithm) {
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Digest " + algorithm + " isn't supported", e);
+        }
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        md.update(buffer);
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        md.update(bytes, offset, length);
+    }
+
+    @Override
+    public byte[] digest() {
+        return md.digest();
+    }
+
+    @Override
+    public void digest(byte[] result, int offset) {
+        try {
+            md.digest(result, offset, md.getDigestLength());
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("Not enough space for hash", e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        md.reset();
+    }
+
+    @Override
+    public int length() {
+        return md.getDigestLength();
+    }
+}
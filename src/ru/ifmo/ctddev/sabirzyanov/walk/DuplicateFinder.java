@@ -0,0 +1,244 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Finds groups of files with equal contents.
+ * <p>
+ * Files are hashed in three stages, each one dropping files which already have no pair:
+ * files are grouped by size, files of the same size by hash of their first and last
+ * {@link #SAMPLE} bytes, and only the remaining candidates are hashed in full.
+ * Files of unique size are never read.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class DuplicateFinder implements AutoCloseable {
+    static final int SAMPLE = 4 << 10;
+
+    private final Map<Long, List<Candidate>> bySize = new HashMap<>();
+    private final Set<Object> seen = new HashSet<>();
+    private final HashAlgorithm algorithm;
+    private final HashCache cache;
+    private final ExecutorService executor;
+    private final AsyncHasher async;
+
+    /**
+     * Creates finder which hashes files on {@code threads} threads.
+     * @param threads number of hashing threads
+     * @param algorithm hash function
+     * @param cache hash cache for {@code algorithm} or {@code null}
+     */
+    public DuplicateFinder(int threads, HashAlgorithm algorithm, HashCache cache) {
+        this(threads, algorithm, cache, null);
+    }
+
+    /**
+     * Creates finder which reads candidates in full with {@code async} hasher, if it is not {@code null}.
+     * Samples are read on {@code threads} threads, as they are small.
+     * @param threads number of hashing threads
+     * @param algorithm hash function
+     * @param cache hash cache for {@code algorithm} or {@code null}
+     * @param async asynchronous hasher for {@code algorithm} or {@code null}
+     */
+    public DuplicateFinder(int threads, HashAlgorithm algorithm, HashCache cache, AsyncHasher async) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.algorithm = algorithm;
+        this.cache = cache;
+        this.async = async;
+    }
+
+    /**
+     * Adds all files reachable from {@code root} to candidates. Unreadable files are skipped,
+     * as are files already added from this or another root, so overlapping roots and repeated
+     * lines don't make a file a duplicate of itself.
+     * @param root file or directory to walk
+     */
+    public void add(Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attr) {
+                    WalkMetrics.get().directory();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attr) {
+                    if (attr.isRegularFile() && seen.add(key(file, attr))) {
+                        bySize.computeIfAbsent(attr.size(), size -> new ArrayList<>()).add(new Candidate(file, attr));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    WalkMetrics.get().error(e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            WalkMetrics.get().error(e);
+            System.err.println("Couldn't walk " + root + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns identity of the file: its file key (device and inode on Unix) if it is available,
+     * and normalized absolute path otherwise.
+     */
+    private static Object key(Path file, BasicFileAttributes attr) {
+        Object key = attr.fileKey();
+        return key != null ? key : file.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Writes groups of duplicates among added files, largest files first.
+     * Every file is written as {@code "<hash> <path>"} line, groups are separated by an empty line.
+     * @param out destination
+     * @throws IOException if output can't be written
+     */
+    public void write(HashWriter out) throws IOException {
+        List<List<Candidate>> groups = new ArrayList<>();
+        for (List<Candidate> group : bySize.values()) {
+            if (group.size() > 1) {
+                groups.add(group);
+            }
+        }
+        groups = split(groups, false);
+        groups = split(groups, true);
+        groups.sort(Comparator.<List<Candidate>>comparingLong(group -> -group.get(0).attr.size())
+                .thenComparing(group -> group.get(0).hash));
+        boolean first = true;
+        for (List<Candidate> group : groups) {
+            if (!first) {
+                out.newLine();
+            }
+            first = false;
+            group.sort(Comparator.comparing(candidate -> candidate.file));
+            for (Candidate candidate : group) {
+                out.write(candidate.hash, candidate.file);
+            }
+        }
+    }
+
+    /**
+     * Hashes all candidates and splits every group to subgroups of at least two files with equal hashes.
+     * Files which can't be read get {@code null} hash and are dropped.
+     */
+    private List<List<Candidate>> split(List<List<Candidate>> groups, boolean full) {
+        List<Candidate> hashed = new ArrayList<>();
+        List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (List<Candidate> group : groups) {
+                for (Candidate candidate : group) {
+                    if (candidate.hash == null || !candidate.complete) {
+                        hashed.add(candidate);
+                        futures.add(submit(candidate, full));
+                    }
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                hashed.get(i).hash = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        List<List<Candidate>> result = new ArrayList<>();
+        for (List<Candidate> group : groups) {
+            Map<String, List<Candidate>> byHash = new HashMap<>();
+            for (Candidate candidate : group) {
+                if (candidate.hash != null) {
+                    byHash.computeIfAbsent(candidate.hash, hash -> new ArrayList<>()).add(candidate);
+                }
+            }
+            for (List<Candidate> subgroup : byHash.values()) {
+                if (subgroup.size() > 1) {
+                    result.add(subgroup);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts hashing of the sample or the whole {@code candidate}. Whole files are read
+     * with the asynchronous hasher, if there is one, unless they are in the cache.
+     */
+    private Future<String> submit(Candidate candidate, boolean full) throws InterruptedException {
+        if (!full || async == null) {
+            return executor.submit(() -> full ? fullHash(candidate) : sampleHash(candidate));
+        }
+        candidate.complete = true;
+        String cached = cache == null ? null : cache.get(candidate.file, candidate.attr);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<String> hash = async.hash(candidate.file);
+        return cache == null ? hash : hash.thenApply(h -> h == null ? null : cache.put(candidate.file, candidate.attr, h));
+    }
+
+    /**
+     * Hashes first and last {@link #SAMPLE} bytes of the file. Files not longer than
+     * two samples are hashed in full, so they don't need the last stage.
+     */
+    private String sampleHash(Candidate candidate) {
+        long size = candidate.attr.size();
+        if (size <= 2 * SAMPLE) {
+            return fullHash(candidate);
+        }
+        FileHasher hasher = algorithm.get();
+        hasher.reset();
+        ByteBuffer buffer = ByteBuffer.allocate(SAMPLE);
+        try (FileChannel channel = FileChannel.open(candidate.file, StandardOpenOption.READ)) {
+            for (long position : new long[]{0, size - SAMPLE}) {
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                }
+                buffer.flip();
+                hasher.update(buffer);
+            }
+            return HashWriter.toHex(hasher.digest());
+        } catch (IOException e) {
+            WalkMetrics.get().error(e);
+            return null;
+        }
+    }
+
+    private String fullHash(Candidate candidate) {
+        candidate.complete = true;
+        if (cache != null) {
+            return cache.getHash(candidate.file, candidate.attr);
+        }
+        byte[] hash = new byte[algorithm.length()];
+        return Walk.hash(candidate.file, algorithm, hash) ? HashWriter.toHex(hash) : null;
+    }
+
+    /**
+     * Stops hashing threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static class Candidate {
+        private final Path file;
+        private final BasicFileAttributes attr;
+        private String hash;
+        private boolean complete;
+
+        Candidate(Path file, BasicFileAttributes attr) {
+            this.file = file;
+            this.attr = attr;
+        }
+    }
+}
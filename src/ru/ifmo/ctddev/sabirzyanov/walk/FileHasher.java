@@ -0,0 +1,51 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash function used to hash file contents.
+ * <p>
+ * Instances are not thread-safe. Use {@link HashAlgorithm#get()} to get instance
+ * pooled for the current thread.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public interface FileHasher {
+    /**
+     * Feeds remaining bytes of the {@code buffer} to the hash. Buffer position is moved to its limit.
+     * @param buffer data to hash
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Feeds {@code length} bytes of {@code bytes} starting from {@code offset} to the hash.
+     * @param bytes data to hash
+     * @param offset first byte to hash
+     * @param length number of bytes to hash
+     */
+    void update(byte[] bytes, int offset, int length);
+
+    /**
+     * Completes the hash computation and resets the hasher.
+     * @return hash of all bytes fed since the last reset
+     */
+    byte[] digest();
+
+    /**
+     * Completes the hash computation, stores hash to {@code result} and resets the hasher.
+     * @param result array to store {@link #length()} bytes of the hash to
+     * @param offset position of the first hash byte in {@code result}
+     */
+    void digest(byte[] result, int offset);
+
+    /**
+     * Forgets all bytes fed since the last reset.
+     */
+    void reset();
+
+    /**
+     * Returns length of the hash in bytes.
+     * @return length of the hash
+     */
+    int length();
+}
@@ -0,0 +1,73 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Hash functions available to {@link Walk}.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public enum HashAlgorithm {
+    MD5(() -> new DigestHasher("MD5")),
+    SHA256(() -> new DigestHasher("SHA-256")),
+    /**
+     * Fast non-cryptographic 128-bit hash for duplicate detection.
+     */
+    MURMUR3(Murmur3Hasher::new);
+
+    private final Supplier<FileHasher> factory;
+    private final ThreadLocal<FileHasher> pool;
+    private final String errorHash;
+
+    HashAlgorithm(Supplier<FileHasher> factory) {
+        this.factory = factory;
+        this.pool = ThreadLocal.withInitial(factory);
+        this.errorHash = HashWriter.toHex(new byte[factory.get().length()]);
+    }
+
+    /**
+     * Returns new hasher.
+     * @return new hasher
+     */
+    public FileHasher create() {
+        return factory.get();
+    }
+
+    /**
+     * Returns hasher owned by the current thread. It is shared by all callers on this thread,
+     * so it must not be used by two computations at once.
+     * @return hasher of the current thread
+     */
+    public FileHasher get() {
+        return pool.get();
+    }
+
+    /**
+     * Returns hash printed for files that can't be read. It is only an output format: MurmurHash3
+     * of an empty file is zeroes as well, so failures are tracked separately, never by comparing
+     * with this hash.
+     * @return hash of zeroes
+     */
+    public String errorHash() {
+        return errorHash;
+    }
+
+    /**
+     * Returns length of hashes in bytes.
+     * @return length of hashes
+     */
+    public int length() {
+        return get().length();
+    }
+
+    /**
+     * Returns algorithm by its case-insensitive name, ignoring dashes, like {@code md5} or {@code sha-256}.
+     * @param name name of the algorithm
+     * @return algorithm with given name
+     * @throws IllegalArgumentException if there is no such algorithm
+     */
+    public static HashAlgorithm forName(String name) {
+        return valueOf(name.replace("-", "").toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,64 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures throughput of every {@link Walk.Strategy} on files of different sizes
+ * for the given {@link HashAlgorithm}.
+ * <p>
+ * Files are created in a temporary directory, so the second and later rounds are
+ * served from the page cache and show the CPU and syscall cost of each strategy.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class HashBenchmark {
+    private static final int[] SIZES = {4 << 10, 256 << 10, 4 << 20, 256 << 20};
+    private static final long BYTES_PER_RUN = 256L << 20;
+
+    /**
+     * Runs the benchmark.
+     * @param args [rounds [algorithm]]
+     * @throws IOException if temporary files can't be created
+     */
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        HashAlgorithm algorithm = args.length > 1 ? HashAlgorithm.forName(args[1]) : HashAlgorithm.MD5;
+        Path dir = Files.createTempDirectory("HashBenchmark");
+        try {
+            Random random = new Random(239);
+            for (int size : SIZES) {
+                Path file = dir.resolve("file" + size);
+                fill(file, size, random);
+                for (int round = 0; round < rounds; round++) {
+                    for (Walk.Strategy strategy : Walk.Strategy.values()) {
+                        long files = Math.max(1, BYTES_PER_RUN / size);
+                        long start = System.nanoTime();
+                        for (long i = 0; i < files; i++) {
+                            Walk.getHash(file, strategy, algorithm);
+                        }
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        System.out.printf("size %10d  round %d  %-6s %8.1f MB/s%n",
+                                size, round, strategy, files * size / seconds / (1 << 20));
+                    }
+                }
+                Files.delete(file);
+            }
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void fill(Path file, int size, Random random) throws IOException {
+        byte[] block = new byte[1 << 16];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                out.write(block, 0, Math.min(block.length, size - written));
+            }
+        }
+    }
+}
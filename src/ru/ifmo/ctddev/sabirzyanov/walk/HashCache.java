@@ -0,0 +1,267 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent cache of file hashes, which lets repeated walks skip unchanged files.
+ * <p>
+ * Entries are keyed by absolute path and are valid while file size, modification time
+ * and file key (inode on Unix) stay the same. The cache file is append-only: every new
+ * or changed hash is appended as a record, later records override earlier ones.
+ * Records are binary: path, size, modification time, file key and raw hash bytes, which length
+ * is fixed by the algorithm. Unix file keys are stored as device and inode numbers.
+ * Cache written for another hash algorithm or in an older format is discarded.
+ * Superseded records and a torn tail left by a crash are dropped by rewriting the file
+ * on load, so the cost of a run depends on the number of changed files only.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class HashCache implements Closeable {
+    private static final int MAGIC = 0x57484332;
+    private static final Pattern UNIX_KEY = Pattern.compile("\\(dev=([0-9a-f]+),ino=(-?[0-9]+)\\)");
+    private static final byte NO_KEY = 0;
+    private static final byte UNIX = 1;
+    private static final byte OTHER = 2;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final HashAlgorithm algorithm;
+    private final DataOutputStream out;
+
+    /**
+     * Loads cache from {@code file}, creating it if needed.
+     * @param file cache file
+     * @param algorithm hash function of the cached hashes
+     * @throws IOException if cache file can't be read or written
+     */
+    public HashCache(Path file, HashAlgorithm algorithm) throws IOException {
+        this.algorithm = algorithm;
+        long records = load(file);
+        if (records < 0 || records > 2 * entries.size()) {
+            compact(file);
+        }
+        boolean empty = !Files.exists(file) || Files.size(file) == 0;
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+        if (empty) {
+            writeHeader(out);
+        }
+    }
+
+    /**
+     * Returns cached hash of the {@code file}, if file wasn't changed since it was cached.
+     * @param file file to look up
+     * @param attr current attributes of the {@code file}
+     * @return cached hash or {@code null}
+     */
+    public synchronized String get(Path file, BasicFileAttributes attr) {
+        Entry entry = entries.get(key(file));
+        if (entry == null || !entry.matches(attr)) {
+            return null;
+        }
+        WalkMetrics.get().cached();
+        return HashWriter.toHex(entry.hash);
+    }
+
+    /**
+     * Remembers hash of the {@code file}, which should have been read successfully.
+     * @param file hashed file
+     * @param attr attributes of the {@code file} at the moment of hashing
+     * @param hash hash of the {@code file}
+     * @return {@code hash}
+     */
+    public synchronized String put(Path file, BasicFileAttributes attr, String hash) {
+        Entry entry = new Entry(attr, fromHex(hash));
+        String path = key(file);
+        entries.put(path, entry);
+        try {
+            entry.write(path, out);
+        } catch (IOException e) {
+            WalkMetrics.get().error(e);
+            System.err.println("Couldn't write to hash cache: " + e.getMessage());
+        }
+        return hash;
+    }
+
+    /**
+     * Returns hash of the {@code file}, computing and remembering it if needed.
+     * @param file file to hash
+     * @param attr current attributes of the {@code file}
+     * @return hex hash or {@code null} if file can't be read
+     */
+    public String getHash(Path file, BasicFileAttributes attr) {
+        String hash = get(file, attr);
+        if (hash != null) {
+            return hash;
+        }
+        byte[] bytes = new byte[algorithm.length()];
+        return Walk.hash(file, algorithm, bytes) ? put(file, attr, HashWriter.toHex(bytes)) : null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Reads records of the cache file.
+     * @return number of records read, or {@code -1} if file is broken and should be rewritten
+     */
+    private long load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !algorithm.name().equals(in.readUTF())) {
+                entries.clear();
+                return -1;
+            }
+            while (true) {
+                String path;
+                try {
+                    path = in.readUTF();
+                } catch (EOFException e) {
+                    return records;
+                }
+                entries.put(path, Entry.read(in, algorithm.length()));
+                records++;
+            }
+        } catch (EOFException | UTFDataFormatException e) {
+            return -1;
+        }
+    }
+
+    private void compact(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            writeHeader(out);
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                entry.getValue().write(entry.getKey(), out);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(algorithm.name());
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * File key of the attributes: device and inode on Unix, string form of the key elsewhere.
+     */
+    private static class FileKey {
+        private final byte kind;
+        private final long device;
+        private final long inode;
+        private final String other;
+
+        FileKey(byte kind, long device, long inode, String other) {
+            this.kind = kind;
+            this.device = device;
+            this.inode = inode;
+            this.other = other;
+        }
+
+        static FileKey of(BasicFileAttributes attr) {
+            Object key = attr.fileKey();
+            if (key == null) {
+                return new FileKey(NO_KEY, 0, 0, null);
+            }
+            Matcher unix = UNIX_KEY.matcher(key.toString());
+            if (unix.matches()) {
+                return new FileKey(UNIX, Long.parseUnsignedLong(unix.group(1), 16), Long.parseLong(unix.group(2)), null);
+            }
+            return new FileKey(OTHER, 0, 0, key.toString());
+        }
+
+        boolean same(FileKey key) {
+            return kind == key.kind && device == key.device && inode == key.inode && Objects.equals(other, key.other);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(kind);
+            if (kind == UNIX) {
+                out.writeLong(device);
+                out.writeLong(inode);
+            } else if (kind == OTHER) {
+                out.writeUTF(other);
+            }
+        }
+
+        static FileKey read(DataInputStream in) throws IOException {
+            byte kind = in.readByte();
+            switch (kind) {
+                case NO_KEY:
+                    return new FileKey(NO_KEY, 0, 0, null);
+                case UNIX:
+                    return new FileKey(UNIX, in.readLong(), in.readLong(), null);
+                case OTHER:
+                    return new FileKey(OTHER, 0, 0, in.readUTF());
+                default:
+                    throw new UTFDataFormatException("Unknown file key kind " + kind);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final FileKey fileKey;
+        private final byte[] hash;
+
+        Entry(long size, long modified, FileKey fileKey, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        Entry(BasicFileAttributes attr, byte[] hash) {
+            this(attr.size(), attr.lastModifiedTime().to(TimeUnit.NANOSECONDS), FileKey.of(attr), hash);
+        }
+
+        boolean matches(BasicFileAttributes attr) {
+            return size == attr.size()
+                    && modified == attr.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    && fileKey.same(FileKey.of(attr));
+        }
+
+        void write(String path, DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(modified);
+            fileKey.write(out);
+            out.write(hash);
+        }
+
+        static Entry read(DataInputStream in, int hashLength) throws IOException {
+            long size = in.readLong();
+            long modified = in.readLong();
+            FileKey fileKey = FileKey.read(in);
+            byte[] hash = new byte[hashLength];
+            in.readFully(hash);
+            return new Entry(size, modified, fileKey, hash);
+        }
+    }
+}
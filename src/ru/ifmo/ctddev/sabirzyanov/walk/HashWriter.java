@@ -0,0 +1,210 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes {@code "<hash> <path>"} lines in UTF-8 without allocating per line.
+ * <p>
+ * Hashes are hex-encoded and paths are UTF-8-encoded straight into a reusable byte buffer,
+ * which is written to the underlying stream in large blocks. The only per-line object
+ * is the {@link String} returned by {@link Path#toString()}, which path implementations cache.
+ * Not thread-safe.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class HashWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_CHAR_BYTES = 4;
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    private final OutputStream out;
+    private final FileChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private long written;
+
+    /**
+     * Creates writer to the {@code out}.
+     * @param out destination stream, closed by {@link #close()}
+     */
+    public HashWriter(OutputStream out) {
+        this.out = out;
+        this.channel = null;
+    }
+
+    /**
+     * Creates or truncates {@code file} and creates writer to it.
+     * @param file destination file
+     * @throws IOException if file can't be opened
+     */
+    public HashWriter(Path file) throws IOException {
+        this(file, 0);
+    }
+
+    /**
+     * Creates writer which continues {@code file} after its first {@code length} bytes,
+     * dropping the rest of it.
+     * @param file destination file, created if needed
+     * @param length number of bytes to keep
+     * @throws IOException if file can't be opened or is shorter than {@code length}
+     */
+    public HashWriter(Path file, long length) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < length) {
+                throw new IOException("File " + file + " is shorter than " + length + " bytes");
+            }
+            channel.truncate(length);
+            channel.position(length);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.out = Channels.newOutputStream(channel);
+        this.channel = channel;
+        this.written = length;
+    }
+
+    /**
+     * Returns number of bytes written since the start of the file, including buffered ones.
+     * @return length of the output
+     */
+    public long length() {
+        return written + position;
+    }
+
+    /**
+     * Writes line with hex-encoded {@code hash}.
+     * @param hash hash bytes
+     * @param length number of hash bytes
+     * @param file hashed file
+     * @throws IOException if line can't be written
+     */
+    public void write(byte[] hash, int length, Path file) throws IOException {
+        ensure(2 * length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = HEX[(hash[i] >> 4) & 0xf];
+            buffer[position++] = HEX[hash[i] & 0xf];
+        }
+        finish(file);
+    }
+
+    /**
+     * Writes line with already encoded {@code hash}.
+     * @param hash hex hash
+     * @param file hashed file
+     * @throws IOException if line can't be written
+     */
+    public void write(String hash, Path file) throws IOException {
+        writeChars(hash);
+        finish(file);
+    }
+
+    /**
+     * Writes an empty line.
+     * @throws IOException if line can't be written
+     */
+    public void newLine() throws IOException {
+        ensure(1);
+        buffer[position++] = '\n';
+    }
+
+    private void finish(Path file) throws IOException {
+        ensure(1);
+        buffer[position++] = ' ';
+        writeChars(file.toString());
+        newLine();
+    }
+
+    private void writeChars(String s) throws IOException {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            ensure(MAX_CHAR_BYTES);
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes buffered lines to the underlying stream and flushes it.
+     * @throws IOException if lines can't be written
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Flushes buffered lines and, for file writers, forces them to the storage device.
+     * @throws IOException if lines can't be written
+     */
+    public void sync() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        written += position;
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns upper-case hex representation of the {@code bytes}.
+     * @param bytes bytes to encode
+     * @return hex string
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = (char) HEX[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = (char) HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
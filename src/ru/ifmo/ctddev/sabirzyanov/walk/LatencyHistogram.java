@@ -0,0 +1,93 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations with power-of-two buckets.
+ * <p>
+ * Percentiles are reported as the upper bound of their bucket, so they are exact within factor of two.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Records duration since {@code start}.
+     * @param start {@link System#nanoTime()} at the start of the operation
+     */
+    void since(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos) - (nanos == 0 ? 0 : 1));
+        total.add(nanos);
+    }
+
+    long count() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    long totalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Returns upper bound of the {@code fraction}-th quantile in nanoseconds.
+     * @param fraction quantile, from 0 to 1
+     * @return upper bound or 0 if nothing was recorded
+     */
+    long percentile(double fraction) {
+        long count = count();
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return i >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << (i + 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns count, total time and percentiles, in microseconds.
+     * @return summary for JMX
+     */
+    Map<String, Long> summary() {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("count", count());
+        summary.put("totalMicros", TimeUnit.NANOSECONDS.toMicros(totalNanos()));
+        summary.put("p50Micros", TimeUnit.NANOSECONDS.toMicros(percentile(0.5)));
+        summary.put("p90Micros", TimeUnit.NANOSECONDS.toMicros(percentile(0.9)));
+        summary.put("p99Micros", TimeUnit.NANOSECONDS.toMicros(percentile(0.99)));
+        return summary;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("p50 %s p99 %s total %.1fs",
+                format(percentile(0.5)), format(percentile(0.99)), totalNanos() / 1e9);
+    }
+
+    private static String format(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return nanos / 1_000 + "us";
+        }
+        return nanos / 1_000_000 + "ms";
+    }
+}
@@ -0,0 +1,169 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming 128-bit MurmurHash3 (x64 variant, seed 0).
+ * <p>
+ * Non-cryptographic: fine for finding duplicates, useless against deliberate collisions.
+ * Hash bytes are {@code h1} followed by {@code h2}, both little-endian, which is
+ * the byte order of the reference implementation.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+class Murmur3Hasher implements FileHasher {
+    private static final int BLOCK = 16;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final byte[] tail = new byte[BLOCK];
+    private int tailLength;
+    private long h1;
+    private long h2;
+    private long length;
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int remaining = buffer.remaining();
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), remaining);
+            buffer.position(buffer.limit());
+            return;
+        }
+        while (tailLength != 0 && buffer.hasRemaining()) {
+            append(buffer.get());
+        }
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.remaining() >= BLOCK) {
+            block(buffer.getLong(), buffer.getLong());
+        }
+        buffer.order(order);
+        while (buffer.hasRemaining()) {
+            append(buffer.get());
+        }
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        while (tailLength != 0 && offset < end) {
+            append(bytes[offset++]);
+        }
+        for (; end - offset >= BLOCK; offset += BLOCK) {
+            block(getLong(bytes, offset), getLong(bytes, offset + 8));
+        }
+        while (offset < end) {
+            append(bytes[offset++]);
+        }
+    }
+
+    private void append(byte b) {
+        tail[tailLength++] = b;
+        if (tailLength == BLOCK) {
+            tailLength = 0;
+            block(getLong(tail, 0), getLong(tail, 8));
+        }
+    }
+
+    private void block(long k1, long k2) {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+
+        length += BLOCK;
+    }
+
+    @Override
+    public byte[] digest() {
+        byte[] result = new byte[BLOCK];
+        digest(result, 0);
+        return result;
+    }
+
+    @Override
+    public void digest(byte[] result, int offset) {
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = tailLength - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (tail[i] & 0xff);
+        }
+        for (int i = Math.min(tailLength, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (tail[i] & 0xff);
+        }
+        if (tailLength > 8) {
+            h2 ^= mixK2(k2);
+        }
+        if (tailLength > 0) {
+            h1 ^= mixK1(k1);
+        }
+        long total = length + tailLength;
+        h1 ^= total;
+        h2 ^= total;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        putLong(result, offset, h1);
+        putLong(result, offset + 8, h2);
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        h1 = 0;
+        h2 = 0;
+        length = 0;
+        tailLength = 0;
+    }
+
+    @Override
+    public int length() {
+        return BLOCK;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long result = 0;
+        for (int i = 7; i >= 0; i--) {
+            result = (result << 8) | (bytes[offset + i] & 0xff);
+        }
+        return result;
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            bytes[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Walks directory trees and hashes files on a bounded pool of worker threads.
+ * <p>
+ * Traversal runs on the calling thread and submits every visited file to the pool.
+ * At most {@code threads * WINDOW_PER_THREAD} files are in flight at once. Lines are written
+ * either in traversal order or, in sorted mode, sorted by path within each root. In traversal
+ * order memory stays bounded however large the tree is. Sorted mode keeps path and hash of every
+ * file of the root until the root is walked, so its memory grows with the number of files.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class ParallelWalk implements AutoCloseable {
+    private static final int WINDOW_PER_THREAD = 16;
+
+    private final ExecutorService executor;
+    private final int window;
+    private final boolean sorted;
+    private final HashAlgorithm algorithm;
+    private final HashCache cache;
+    private final AsyncHasher async;
+
+    /**
+     * Creates walker with {@code threads} MD5 hashing workers.
+     * @param threads number of hashing threads
+     * @param sorted whether lines of each root should be sorted by path
+     */
+    public ParallelWalk(int threads, boolean sorted) {
+        this(threads, sorted, HashAlgorithm.MD5, null);
+    }
+
+    /**
+     * Creates walker with {@code threads} hashing workers, which skips files unchanged since
+     * they were put to {@code cache}.
+     * @param threads number of hashing threads
+     * @param sorted whether lines of each root should be sorted by path
+     * @param algorithm hash function
+     * @param cache hash cache for {@code algorithm} or {@code null}
+     */
+    public ParallelWalk(int threads, boolean sorted, HashAlgorithm algorithm, HashCache cache) {
+        this(threads, sorted, algorithm, cache, null);
+    }
+
+    /**
+     * Creates walker which reads files with {@code async} hasher, if it is not {@code null},
+     * and with {@code threads} hashing workers otherwise.
+     * @param threads number of hashing threads
+     * @param sorted whether lines of each root should be sorted by path
+     * @param algorithm hash function
+     * @param cache hash cache for {@code algorithm} or {@code null}
+     * @param async asynchronous hasher for {@code algorithm} or {@code null}
+     */
+    public ParallelWalk(int threads, boolean sorted, HashAlgorithm algorithm, HashCache cache, AsyncHasher async) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.window = Math.max(threads * WINDOW_PER_THREAD, async == null ? 0 : 2 * async.capacity());
+        this.sorted = sorted;
+        this.algorithm = algorithm;
+        this.cache = cache;
+        this.async = async;
+    }
+
+    /**
+     * Hashes all files reachable from {@code root} and writes them to {@code out}.
+     * @param root file or directory to walk
+     * @param out destination of {@code "<hash> <path>"} lines
+     */
+    public void walk(Path root, HashWriter out) {
+        final Deque<Line> pending = new ArrayDeque<>();
+        final List<Line> done = new ArrayList<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attr) {
+                    WalkMetrics.get().directory();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attr) {
+                    try {
+                        submit(new Line(file, hash(file, attr)));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return FileVisitResult.TERMINATE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    WalkMetrics.get().error(e);
+                    submit(new Line(file, CompletableFuture.completedFuture(algorithm.errorHash())));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void submit(Line line) {
+                    pending.add(line);
+                    if (pending.size() >= window) {
+                        emit(pending.poll(), done, out);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            WalkMetrics.get().error(e);
+            pending.add(new Line(root, CompletableFuture.completedFuture(algorithm.errorHash())));
+        }
+        while (!pending.isEmpty()) {
+            emit(pending.poll(), done, out);
+        }
+        if (sorted) {
+            done.sort((a, b) -> a.file.compareTo(b.file));
+            done.forEach(line -> RecursiveWalk.println(line.hash, line.file, out));
+        }
+    }
+
+    private Future<String> hash(Path file, BasicFileAttributes attr) throws InterruptedException {
+        String cached = cache == null ? null : cache.get(file, attr);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (async != null) {
+            CompletableFuture<String> hash = async.hash(file);
+            return cache == null ? hash : hash.thenApply(h -> h == null ? null : cache.put(file, attr, h));
+        }
+        if (cache != null) {
+            return executor.submit(() -> cache.getHash(file, attr));
+        }
+        return executor.submit(() -> Walk.getHash(file, algorithm));
+    }
+
+    private void emit(Line line, List<Line> done, HashWriter out) {
+        line.await(algorithm.errorHash());
+        if (sorted) {
+            done.add(line);
+        } else {
+            RecursiveWalk.println(line.hash, line.file, out);
+        }
+    }
+
+    /**
+     * Stops hashing threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Output line, which hash may be still being computed. Hash of a file that couldn't be read
+     * is {@code null} until it is awaited and replaced by the error hash.
+     */
+    private static class Line {
+        private final Path file;
+        private Future<String> future;
+        private String hash;
+
+        Line(Path file, Future<String> future) {
+            this.file = file;
+            this.future = future;
+        }
+
+        void await(String errorHash) {
+            try {
+                hash = future.get();
+                if (hash == null) {
+                    hash = errorHash;
+                }
+            } catch (ExecutionException e) {
+                hash = errorHash;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                hash = errorHash;
+            }
+            future = null;
+        }
+    }
+}
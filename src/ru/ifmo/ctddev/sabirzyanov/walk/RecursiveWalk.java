@@ -1,54 +1,211 @@
 package ru.ifmo.ctddev.sabirzyanov.walk;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
 
 /**
  * Created by Ilnar Sabirzyanov on 29.02.2016.
  */
 public class RecursiveWalk {
-    public static void println(String s, BufferedWriter out) {
+    private static final long ASYNC_BUDGET = 64 << 20;
+    private static final long CHECKPOINT_PERIOD = 10_000;
+
+    public static void println(String hash, Path file, HashWriter out) {
+        try {
+            out.write(hash, file);
+        } catch (IOException e) {
+            WalkMetrics.get().error(e);
+            System.err.println("Couldn't write to file.");
+        }
+    }
+
+    public static void println(byte[] hash, int length, Path file, HashWriter out) {
         try {
-            out.write(s + '\n');
+            out.write(hash, length, file);
         } catch (IOException e) {
+            WalkMetrics.get().error(e);
             System.err.println("Couldn't write to file.");
         }
     }
 
+    public static void walk(Path path, HashWriter out) {
+        walk(path, out, HashAlgorithm.MD5, null);
+    }
 
-    public static void walk(Path path, BufferedWriter out) {
+    /**
+     * Hashes all files reachable from {@code path}, reusing hashes of unchanged files.
+     * @param path file or directory to walk
+     * @param out destination of {@code "<hash> <path>"} lines
+     * @param algorithm hash function
+     * @param cache hash cache for {@code algorithm} or {@code null}
+     */
+    public static void walk(Path path, HashWriter out, HashAlgorithm algorithm, HashCache cache) {
+        final byte[] hash = new byte[algorithm.length()];
         try {
             Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attr) {
+                    WalkMetrics.get().directory();
+                    return FileVisitResult.CONTINUE;
+                }
+
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attr) {
-                    println(Walk.getHash(file) + " " + file, out);
+                    if (cache != null) {
+                        String cached = cache.getHash(file, attr);
+                        println(cached == null ? algorithm.errorHash() : cached, file, out);
+                    } else if (Walk.hash(file, algorithm, hash)) {
+                        println(hash, hash.length, file, out);
+                    } else {
+                        println(algorithm.errorHash(), file, out);
+                    }
                     return FileVisitResult.CONTINUE;
                 }
 
                 @Override
                 public FileVisitResult visitFileFailed(Path file, IOException e) {
-                    println(Walk.ERROR_HASH + " " + file, out);
+                    WalkMetrics.get().error(e);
+                    println(algorithm.errorHash(), file, out);
                     return FileVisitResult.CONTINUE;
                 }
             });
         } catch (IOException e) {
-            println(Walk.ERROR_HASH + " " + path, out);
+            WalkMetrics.get().error(e);
+            println(algorithm.errorHash(), path, out);
+        }
+    }
+
+    private static void walkInput(BufferedReader in, Shard shard, Checkpoint checkpoint, HashWriter out,
+                                  Consumer<Path> walker) throws IOException {
+        long skip = checkpoint == null ? 0 : checkpoint.lines();
+        long line = 0;
+        String file;
+        while ((file = in.readLine()) != null) {
+            if (line >= skip && shard.contains(line)) {
+                walker.accept(Paths.get(file));
+            }
+            line++;
+            if (checkpoint != null && line > skip) {
+                checkpoint.update(line, out);
+            }
         }
     }
 
+    /**
+     * Hashes all files reachable from paths listed in input file.
+     * <p>
+     * Without options files are hashed one by one on the main thread.
+     * {@code -j threads} hashes files on a pool of {@code threads} workers,
+     * {@code -sorted} sorts lines of every root by path, buffering all lines of the root,
+     * {@code -cache file} keeps hashes of unchanged files between runs,
+     * {@code -hash algorithm} selects one of {@link HashAlgorithm} instead of MD5,
+     * {@code -dedup} writes only groups of files with equal contents, see {@link DuplicateFinder},
+     * {@code -async} reads files with {@link AsyncHasher}, which suits high-latency file systems,
+     * {@code -progress seconds} prints {@link WalkMetrics} to stderr periodically,
+     * {@code -shard index/count} processes only a {@link Shard} of the input list,
+     * {@code -checkpoint file} records progress, so a restarted run resumes where it stopped,
+     * see {@link Checkpoint}. Metrics are also available through JMX.
+     *
+     * @param args [-j threads] [-sorted] [-cache file] [-hash md5|sha-256|murmur3] [-dedup] [-async]
+     *             [-progress seconds] [-shard index/count] [-checkpoint file] input output
+     */
     public static void main(String[] args) {
-        assert args != null;
-        assert args.length == 2;
-        try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]), Charset.forName("UTF-8"));
-             BufferedWriter out = Files.newBufferedWriter(Paths.get(args[1]), Charset.forName("UTF-8"))) {
-            String file;
-            while ((file = in.readLine()) != null) {
-                walk(Paths.get(file), out);
+        int threads = 0;
+        boolean sorted = false;
+        boolean dedup = false;
+        boolean async = false;
+        long progress = 0;
+        String cacheFile = null;
+        String checkpointFile = null;
+        Shard shard = Shard.ALL;
+        HashAlgorithm algorithm = HashAlgorithm.MD5;
+        int i = 0;
+        try {
+            for (; args != null && i < args.length && args[i].startsWith("-"); i++) {
+                switch (args[i]) {
+                    case "-j":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-sorted":
+                        sorted = true;
+                        break;
+                    case "-progress":
+                        progress = Long.parseLong(args[++i]);
+                        break;
+                    case "-shard":
+                        shard = Shard.parse(args[++i]);
+                        break;
+                    case "-checkpoint":
+                        checkpointFile = args[++i];
+                        break;
+                    case "-async":
+                        async = true;
+                        break;
+                    case "-dedup":
+                        dedup = true;
+                        break;
+                    case "-hash":
+                        algorithm = HashAlgorithm.forName(args[++i]);
+                        break;
+                    case "-cache":
+                        cacheFile = args[++i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Invalid options: " + e.getMessage());
+            args = null;
+        }
+        if (args == null || args.length - i != 2) {
+            System.err.println("Usage: RecursiveWalk [-j threads] [-sorted] [-cache file] "
+                    + "[-hash md5|sha-256|murmur3] [-dedup] [-async] "
+                    + "[-progress seconds] [-shard index/count] [-checkpoint file] input output");
+            return;
+        }
+        if (dedup && checkpointFile != null) {
+            System.err.println("Duplicates are written at the end of the walk, -checkpoint can't be used with -dedup");
+            return;
+        }
+        if ((sorted || dedup || async) && threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        WalkMetrics.get().register();
+        try {
+            Checkpoint checkpoint = checkpointFile == null ? null
+                    : new Checkpoint(Paths.get(checkpointFile), CHECKPOINT_PERIOD, shard);
+            long resumed = checkpoint == null ? 0 : checkpoint.length();
+            Closeable reporter = progress > 0 ? WalkMetrics.get().report(System.err, progress) : null;
+            try (BufferedReader in = Files.newBufferedReader(Paths.get(args[i]), Charset.forName("UTF-8"));
+                 HashWriter out = new HashWriter(Paths.get(args[i + 1]), resumed);
+                 HashCache cache = cacheFile == null ? null : new HashCache(Paths.get(cacheFile), algorithm);
+                 AsyncHasher asyncHasher = async ? new AsyncHasher(algorithm, ASYNC_BUDGET) : null) {
+                if (dedup) {
+                    try (DuplicateFinder finder = new DuplicateFinder(threads, algorithm, cache, asyncHasher)) {
+                        walkInput(in, shard, null, out, finder::add);
+                        finder.write(out);
+                    }
+                } else if (threads > 0) {
+                    try (ParallelWalk walker = new ParallelWalk(threads, sorted, algorithm, cache, asyncHasher)) {
+                        walkInput(in, shard, checkpoint, out, root -> walker.walk(root, out));
+                    }
+                } else {
+                    final HashAlgorithm hashAlgorithm = algorithm;
+                    walkInput(in, shard, checkpoint, out, root -> walk(root, out, hashAlgorithm, cache));
+                }
+            } finally {
+                if (reporter != null) {
+                    reporter.close();
+                }
+            }
+            if (checkpoint != null) {
+                checkpoint.delete();
             }
         } catch (IOException e) {
             System.err.println("Error during file reading.");
@@ -0,0 +1,60 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+/**
+ * Part of the input list processed by one of several cooperating runs.
+ * <p>
+ * Shard {@code index/count} takes input lines whose zero-based number is {@code index} modulo
+ * {@code count}, so shards of a list grouped by disk spread every disk over all runs.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class Shard {
+    /**
+     * The whole input.
+     */
+    public static final Shard ALL = new Shard(0, 1);
+
+    private final int index;
+    private final int count;
+
+    /**
+     * Creates shard.
+     * @param index number of the shard, from 0 to {@code count - 1}
+     * @param count number of shards
+     */
+    public Shard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parses shard in {@code index/count} form.
+     * @param s shard description
+     * @return shard
+     * @throws IllegalArgumentException if {@code s} isn't a valid shard
+     */
+    public static Shard parse(String s) {
+        int slash = s.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Shard should be index/count: " + s);
+        }
+        return new Shard(Integer.parseInt(s.substring(0, slash)), Integer.parseInt(s.substring(slash + 1)));
+    }
+
+    /**
+     * Checks whether input line belongs to this shard.
+     * @param line zero-based number of the input line
+     * @return {@code true} if line should be processed
+     */
+    public boolean contains(long line) {
+        return line % count == index;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -1,31 +1,167 @@
 package ru.ifmo.ctddev.sabirzyanov.walk;
 
-import javax.xml.bind.annotation.adapters.HexBinaryAdapter;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Created by Ilnar Sabirzyanov on 29.02.2016.
  */
 public class Walk {
-    private static HexBinaryAdapter adapter = new HexBinaryAdapter();
-    static String ERROR_HASH = adapter.marshal(new byte[16]);
+    static String ERROR_HASH = HashAlgorithm.MD5.errorHash();
 
+    /**
+     * Files of at least this size are hashed from memory-mapped regions.
+     */
+    static final long MAP_THRESHOLD = 4 << 20;
+    static final long MAP_REGION = 64 << 20;
+    static final int BUFFER_SIZE = 64 << 10;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * Ways to feed file contents to the digest.
+     */
+    enum Strategy {
+        /**
+         * {@link InputStream} read into a heap array.
+         */
+        STREAM,
+        /**
+         * {@link FileChannel} read into a reusable per-thread direct buffer.
+         */
+        DIRECT,
+        /**
+         * {@link FileChannel#map} regions passed to the digest as is.
+         */
+        MAPPED
+    }
+
+    /**
+     * Returns MD5 hash of the {@code file}.
+     * @param file file to hash
+     * @return hex hash or {@link #ERROR_HASH} if file can't be read
+     */
     public static String getHash(Path file) {
+        return getHash(file, HashAlgorithm.MD5);
+    }
+
+    /**
+     * Returns hash of the {@code file}, picking reading strategy by its size.
+     * @param file file to hash
+     * @param algorithm hash function
+     * @return hex hash or {@link HashAlgorithm#errorHash()} if file can't be read
+     */
+    public static String getHash(Path file, HashAlgorithm algorithm) {
+        byte[] hash = new byte[algorithm.length()];
+        return hash(file, algorithm, hash) ? HashWriter.toHex(hash) : algorithm.errorHash();
+    }
+
+    /**
+     * Computes hash of the {@code file} without allocating, picking reading strategy by its size.
+     * @param file file to hash
+     * @param algorithm hash function
+     * @param result array to store {@link HashAlgorithm#length()} bytes of the hash to
+     * @return {@code false} if file can't be read
+     */
+    public static boolean hash(Path file, HashAlgorithm algorithm, byte[] result) {
+        WalkMetrics metrics = WalkMetrics.get();
+        FileHasher hasher = algorithm.get();
+        hasher.reset();
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            metrics.open.since(start);
+            long size = channel.size();
+            long read;
+            if (size >= MAP_THRESHOLD && Files.isRegularFile(file)) {
+                read = readMapped(channel, size, hasher);
+            } else {
+                read = readDirect(channel, hasher);
+            }
+            start = System.nanoTime();
+            hasher.digest(result, 0);
+            metrics.digest.since(start);
+            metrics.file(read);
+            return true;
+        } catch (IOException e) {
+            metrics.error(e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns hash of the {@code file} read with given strategy.
+     * @param file file to hash
+     * @param strategy way to read the file
+     * @param algorithm hash function
+     * @return hex hash or {@link HashAlgorithm#errorHash()} if file can't be read
+     */
+    static String getHash(Path file, Strategy strategy, HashAlgorithm algorithm) {
+        FileHasher hasher = algorithm.get();
+        hasher.reset();
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            InputStream is = Files.newInputStream(file);
-            byte[] buffer = new byte[1024];
-            int len;
-            while ((len = is.read(buffer)) != -1) {
-                md.update(buffer, 0, len);
+            if (strategy == Strategy.STREAM) {
+                try (InputStream is = Files.newInputStream(file)) {
+                    byte[] buffer = new byte[1024];
+                    int len;
+                    while ((len = is.read(buffer)) != -1) {
+                        hasher.update(buffer, 0, len);
+                    }
+                }
+            } else {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    if (strategy == Strategy.MAPPED) {
+                        readMapped(channel, channel.size(), hasher);
+                    } else {
+                        readDirect(channel, hasher);
+                    }
+                }
             }
-            return adapter.marshal(md.digest());
-        } catch (NoSuchAlgorithmException | IOException e) {
-            return ERROR_HASH;
+            return HashWriter.toHex(hasher.digest());
+        } catch (IOException e) {
+            return algorithm.errorHash();
+        }
+    }
+
+    private static long readDirect(FileChannel channel, FileHasher hasher) throws IOException {
+        WalkMetrics metrics = WalkMetrics.get();
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        long total = 0;
+        while (true) {
+            long start = System.nanoTime();
+            int read = channel.read(buffer);
+            metrics.read.since(start);
+            if (read == -1) {
+                return total;
+            }
+            total += read;
+            buffer.flip();
+            start = System.nanoTime();
+            hasher.update(buffer);
+            metrics.digest.since(start);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Hashes file by mapped regions. Page faults happen during hashing,
+     * so time of actual reading is accounted as digest time.
+     */
+    private static long readMapped(FileChannel channel, long size, FileHasher hasher) throws IOException {
+        WalkMetrics metrics = WalkMetrics.get();
+        for (long position = 0; position < size; position += MAP_REGION) {
+            long start = System.nanoTime();
+            ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_REGION, size - position));
+            metrics.read.since(start);
+            start = System.nanoTime();
+            hasher.update(region);
+            metrics.digest.since(start);
         }
+        return size;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,176 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import javax.management.*;
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the walk, shared by all walkers of the process.
+ * <p>
+ * Comparing total read time with total digest time shows whether a run is I/O-bound or CPU-bound.
+ * Metrics are available through JMX after {@link #register()} and as a periodic summary
+ * after {@link #report(PrintStream, long)}.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class WalkMetrics implements WalkMetricsMXBean {
+    private static final WalkMetrics INSTANCE = new WalkMetrics();
+    private static final String NAME = "ru.ifmo.ctddev.sabirzyanov.walk:type=WalkMetrics";
+
+    final LatencyHistogram open = new LatencyHistogram();
+    final LatencyHistogram read = new LatencyHistogram();
+    final LatencyHistogram digest = new LatencyHistogram();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final long start = System.nanoTime();
+
+    private WalkMetrics() {
+    }
+
+    /**
+     * Returns metrics of this process.
+     * @return metrics
+     */
+    public static WalkMetrics get() {
+        return INSTANCE;
+    }
+
+    void file(long size) {
+        files.increment();
+        bytes.add(size);
+    }
+
+    /**
+     * Counts file which hash was taken from cache. Its bytes weren't read, so they aren't counted.
+     */
+    void cached() {
+        files.increment();
+        cached.increment();
+    }
+
+    void directory() {
+        directories.increment();
+    }
+
+    void error(Throwable e) {
+        error(e.getClass().getSimpleName());
+    }
+
+    void error(String type) {
+        errors.computeIfAbsent(type, name -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getCachedFiles() {
+        return cached.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFiles() / seconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytes() / seconds();
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((name, count) -> result.put(name, count.sum()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getOpenLatency() {
+        return open.summary();
+    }
+
+    @Override
+    public Map<String, Long> getReadLatency() {
+        return read.summary();
+    }
+
+    @Override
+    public Map<String, Long> getDigestLatency() {
+        return digest.summary();
+    }
+
+    private double seconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    /**
+     * Registers metrics in the platform MBean server. Does nothing if already registered.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(NAME));
+        } catch (InstanceAlreadyExistsException ignored) {
+        } catch (JMException e) {
+            System.err.println("Couldn't register walk metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts printing summary to {@code out} every {@code seconds} seconds.
+     * @param out destination of summaries
+     * @param seconds period
+     * @return reporter, which prints the final summary when closed
+     */
+    public Closeable report(PrintStream out, long seconds) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] last = {getFiles(), getBytes(), System.nanoTime()};
+        scheduler.scheduleAtFixedRate(() -> {
+            long files = getFiles();
+            long bytes = getBytes();
+            long now = System.nanoTime();
+            double interval = Math.max(now - last[2], 1) / 1e9;
+            out.printf("%s | %.0f files/s, %.1f MB/s%n", this,
+                    (files - last[0]) / interval, (bytes - last[1]) / interval / (1 << 20));
+            last[0] = files;
+            last[1] = bytes;
+            last[2] = now;
+        }, seconds, seconds, TimeUnit.SECONDS);
+        return () -> {
+            scheduler.shutdownNow();
+            out.printf("%s | %.0f files/s, %.1f MB/s overall%n", this,
+                    getFilesPerSecond(), getBytesPerSecond() / (1 << 20));
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("files %d (cached %d), %.1f MB, dirs %d, errors %s | open %s | read %s | digest %s",
+                getFiles(), getCachedFiles(), getBytes() / (double) (1 << 20), getDirectories(), getErrors(),
+                open, read, digest);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link WalkMetrics}.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public interface WalkMetricsMXBean {
+    /**
+     * Returns number of successfully hashed files, including files which hashes were taken from cache.
+     * @return number of files
+     */
+    long getFiles();
+
+    /**
+     * Returns number of files which hashes were taken from {@link HashCache} without reading them.
+     * @return number of cached files
+     */
+    long getCachedFiles();
+
+    /**
+     * Returns number of bytes read from hashed files.
+     * @return number of bytes
+     */
+    long getBytes();
+
+    /**
+     * Returns number of visited directories.
+     * @return number of directories
+     */
+    long getDirectories();
+
+    /**
+     * Returns average number of files hashed or taken from cache per second since the start.
+     * @return files per second
+     */
+    double getFilesPerSecond();
+
+    /**
+     * Returns average number of bytes read per second since the start.
+     * @return bytes per second
+     */
+    double getBytesPerSecond();
+
+    /**
+     * Returns number of errors by simple name of the exception class.
+     * @return error counts
+     */
+    Map<String, Long> getErrors();
+
+    /**
+     * Returns statistics of file opening latency.
+     * @return count, total time and percentiles in microseconds
+     */
+    Map<String, Long> getOpenLatency();
+
+    /**
+     * Returns statistics of read latency, per read call or mapped region.
+     * @return count, total time and percentiles in microseconds
+     */
+    Map<String, Long> getReadLatency();
+
+    /**
+     * Returns statistics of hashing latency, per chunk of data.
+     * @return count, total time and percentiles in microseconds
+     */
+    Map<String, Long> getDigestLatency();
+}
@@ -0,0 +1,88 @@
+package ru.ifmo.ctddev.sabirzyanov.walk;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Measures time and heap allocation per output line of {@link HashWriter}
+ * against the former {@link BufferedWriter} and string concatenation approach.
+ * <p>
+ * Allocation is taken from {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)},
+ * so the benchmark needs a HotSpot-based JVM. Exits with status 1 if {@link HashWriter}
+ * allocates more than {@link #MAX_BYTES_PER_LINE} bytes per line.
+ *
+ * @author Ilnar Sabirzyanov
+ */
+public class WriterBenchmark {
+    private static final int PATHS = 1024;
+    private static final double MAX_BYTES_PER_LINE = 1;
+
+    private interface LineWriter {
+        void write(byte[] hash, Path file) throws IOException;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args [lines]
+     * @throws IOException never, output is discarded
+     */
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(239);
+        Path[] paths = new Path[PATHS];
+        byte[][] hashes = new byte[PATHS][16];
+        for (int i = 0; i < PATHS; i++) {
+            paths[i] = Paths.get("/data/archive/" + random.nextInt(1000), "file-" + random.nextLong() + ".bin");
+            random.nextBytes(hashes[i]);
+        }
+
+        double legacy = 0;
+        double streaming = 0;
+        for (int round = 0; round < 3; round++) {
+            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new NullOutputStream(), StandardCharsets.UTF_8))) {
+                legacy = run("BufferedWriter", lines, paths, hashes,
+                        (hash, file) -> out.write(HashWriter.toHex(hash) + " " + file + '\n'));
+            }
+            try (HashWriter out = new HashWriter(new NullOutputStream())) {
+                streaming = run("HashWriter", lines, paths, hashes,
+                        (hash, file) -> out.write(hash, hash.length, file));
+            }
+        }
+        System.out.printf("Allocation per line: %.1f bytes before, %.3f bytes now%n", legacy, streaming);
+        if (streaming > MAX_BYTES_PER_LINE) {
+            System.out.println("FAILED: HashWriter allocates per line");
+            System.exit(1);
+        }
+    }
+
+    private static double run(String name, int lines, Path[] paths, byte[][] hashes, LineWriter writer) throws IOException {
+        for (Path path : paths) {
+            path.toString();
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = bean.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < lines; i++) {
+            writer.write(hashes[i % PATHS], paths[i % PATHS]);
+        }
+        long time = System.nanoTime() - start;
+        double bytes = (double) (bean.getThreadAllocatedBytes(thread) - allocated) / lines;
+        System.out.printf("%-15s %6.1f ns/line %10.3f bytes/line%n", name, (double) time / lines, bytes);
+        return bytes;
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}